@@ -0,0 +1,150 @@
+// Filename: BitBloomFilter.java
+
+// Bloom filter that packs its bits into a long[] (one bit per bit instead of
+// one byte per boolean) and is sized from the number of items we expect to
+// store and the false positive rate we are willing to accept. Each item is
+// hashed once to 64 bits and the k bit positions are derived from two mixes
+// of that hash (Kirsch-Mitzenmacher double hashing: h1 + i * h2), so adding
+// or checking an item costs one hashCode() call no matter how big k is.
+// Objects are hashed through hashCode() (a Long through its value, see
+// keyOf), so they can't be told apart any better than their hashCode() does.
+// Like BloomFilter, it can't be resized since we aren't storing the data.
+public class BitBloomFilter<T> {
+
+	final long[] bits;     // the filter's bits, 64 per long
+	final long numBits;    // number of bits actually used
+	final int numHashes;   // bits set per item
+
+	// Sizes the filter so that after expected items the chance of a false
+	// positive is about fpp
+	// Assume: expected > 0 and 0 < fpp < 1, else IllegalArgumentException
+	public BitBloomFilter(long expected, double fpp) {
+		numBits = optimalNumBits(expected, fpp);
+		numHashes = optimalNumHashes(expected, numBits);
+		bits = new long[(int) ((numBits + 63) >>> 6)];
+	}
+
+	// Adding data to the filter, returns false if it was already there
+	// (or looked like it was, because of a false positive)
+	// Runtime: O(k), k = number of hashes
+	public boolean add(T data) {
+		return addLong(keyOf(data));
+	}
+
+	// Checking to see if data has been stored already
+	// Runtime: O(k), k = number of hashes
+	public boolean contains(T data) {
+		return containsLong(keyOf(data));
+	}
+
+	// Same as add(T) for a primitive key, so callers don't have to box it.
+	// addLong(x) and add(Long.valueOf(x)) set the same bits.
+	public boolean addLong(long key) {
+		return probe(key, numHashes, numBits, false, this::setBit);
+	}
+
+	// Same as contains(T) for a primitive key
+	public boolean containsLong(long key) {
+		return !probe(key, numHashes, numBits, true, this::isClear);
+	}
+
+	// Adds every item, returns how many of them weren't in the filter yet
+	public int addAll(T[] items) {
+		int added = 0;
+		for (T item : items)
+			if (add(item))
+				added++;
+		return added;
+	}
+
+	// Checks every item, result[i] tells whether items[i] is in the filter
+	public boolean[] contains(T[] items) {
+		boolean[] result = new boolean[items.length];
+		for (int i = 0; i < items.length; i++)
+			result[i] = contains(items[i]);
+		return result;
+	}
+
+	// Sets the bit of mask in the given word, returns true if it was unset
+	private boolean setBit(int word, long mask) {
+		if ((bits[word] & mask) != 0)
+			return false;
+		bits[word] |= mask;
+		return true;
+	}
+
+	private boolean isClear(int word, long mask) {
+		return (bits[word] & mask) == 0;
+	}
+
+	// Returns the number of bits the filter uses
+	public long bitCount() {
+		return numBits;
+	}
+
+	// Returns the number of bits set for each item
+	public int hashCount() {
+		return numHashes;
+	}
+
+	// -------------------------------------------------------------------
+	// Hashing and sizing helpers
+	// -------------------------------------------------------------------
+
+	static final long SEED = 0x9E3779B97F4A7C15L;
+
+	// One of the bits an item hashes to: word is its index in the filter's
+	// longs and mask picks it out of that word
+	interface BitProbe {
+		boolean visit(int word, long mask);
+	}
+
+	// The key an item is hashed by. A Long is its own key, so add(T) on a
+	// boxed Long and addLong on the same value land on the same bits (the
+	// other boxed integers already hash to their value).
+	static long keyOf(Object data) {
+		return (data instanceof Long) ? (Long) data : data.hashCode();
+	}
+
+	// Visits the numHashes bits of key, at h1 + i * h2 mod numBits
+	// (Kirsch-Mitzenmacher double hashing). Returns true if visit returned
+	// true for any of them, and with stopEarly returns at the first that does.
+	static boolean probe(long key, int numHashes, long numBits, boolean stopEarly, BitProbe probe) {
+		long h1 = mix64(key);
+		long h2 = mix64(h1 ^ SEED) | 1;
+		boolean any = false;
+		for (int i = 0; i < numHashes; i++) {
+			long index = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+			if (probe.visit((int) (index >>> 6), 1L << index)) {
+				if (stopEarly)
+					return true;
+				any = true;
+			}
+		}
+		return any;
+	}
+
+	// MurmurHash3's 64-bit finalizer, every input bit affects every output bit
+	static long mix64(long z) {
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return z ^ (z >>> 33);
+	}
+
+	// m = -n ln(p) / (ln 2)^2, at least one long's worth of bits
+	static long optimalNumBits(long expected, double fpp) {
+		if (expected <= 0)
+			throw new IllegalArgumentException("expected must be positive: " + expected);
+		if (!(0 < fpp && fpp < 1))
+			throw new IllegalArgumentException("fpp must be between 0 and 1: " + fpp);
+		double m = -expected * Math.log(fpp) / (Math.log(2) * Math.log(2));
+		if (m > (double) Integer.MAX_VALUE * 64)
+			throw new IllegalArgumentException("filter too large for " + expected + " items");
+		return Math.max(64, (long) Math.ceil(m));
+	}
+
+	// k = (m / n) ln 2, at least one hash
+	static int optimalNumHashes(long expected, long numBits) {
+		return Math.max(1, (int) Math.round((double) numBits / expected * Math.log(2)));
+	}
+}
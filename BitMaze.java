@@ -0,0 +1,245 @@
+// Filename: BitMaze.java
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Stores bitsPerCell bits for each of cells cells in ByteBuffers of up to
+// 2^30 bytes each, since one buffer can't hold more than 2^31 bytes. The
+// buffers are direct (off the heap) when asked for, otherwise plain heap
+// buffers. Everything starts at 0.
+class CellStore {
+	static final int CHUNK_SHIFT = 30;
+	static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+	final ByteBuffer[] chunks;
+	final int bitsPerCell;   // 1, 2 or 4 so a cell never straddles two bytes
+	final int mask;
+
+	CellStore(long cells, int bitsPerCell, boolean offHeap) {
+		this.bitsPerCell = bitsPerCell;
+		this.mask = (1 << bitsPerCell) - 1;
+		long bytes = (cells * bitsPerCell + 7) >>> 3;
+		chunks = new ByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+		for (int i = 0; i < chunks.length; i++) {
+			int size = (int) Math.min(bytes - ((long) i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+			chunks[i] = offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+		}
+	}
+
+	int get(long cell) {
+		long bit = cell * bitsPerCell;
+		long index = bit >>> 3;
+		return (chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK)) >>> (bit & 7)) & mask;
+	}
+
+	void set(long cell, int value) {
+		long bit = cell * bitsPerCell;
+		long index = bit >>> 3;
+		ByteBuffer chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+		int offset = (int) (index & CHUNK_MASK);
+		int shift = (int) (bit & 7);
+		chunk.put(offset, (byte) ((chunk.get(offset) & ~(mask << shift)) | ((value & mask) << shift)));
+	}
+}
+
+// Maze stored one bit per cell (1 for a wall) in a file that's memory-mapped
+// rather than read in, so a maze can be far bigger than the heap: 10^10
+// cells is 1.25 GB of file, against 20 GB as a char[][]. The file is a
+// HEADER of rows and cols as two longs, then the cells row by row, cell
+// row * cols + col in bit (cell & 7) of byte cell >> 3. The mapping is
+// split in chunks of 2^30 bytes, and cells are numbered with longs.
+public class BitMaze implements Closeable {
+
+	static final int HEADER = 16;
+
+	final long rows;
+	final long cols;
+	private final FileChannel channel;
+	private final MappedByteBuffer[] chunks;
+
+	private BitMaze(FileChannel channel, long rows, long cols) throws IOException {
+		this.channel = channel;
+		this.rows = rows;
+		this.cols = cols;
+		long bytes = (Math.multiplyExact(rows, cols) + 7) >>> 3;
+		if (channel.size() < HEADER + bytes) {
+			throw new IOException("maze file is shorter than its header says");
+		}
+		chunks = new MappedByteBuffer[(int) ((bytes + CellStore.CHUNK_MASK) >>> CellStore.CHUNK_SHIFT)];
+		for (int i = 0; i < chunks.length; i++) {
+			long start = (long) i << CellStore.CHUNK_SHIFT;
+			long size = Math.min(bytes - start, 1L << CellStore.CHUNK_SHIFT);
+			chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + start, size);
+		}
+	}
+
+	// Maps the maze in filename, which stays open until close
+	public static BitMaze open(String filename) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			while (header.hasRemaining() && channel.read(header) >= 0) {}
+			if (header.hasRemaining()) {
+				throw new IOException("maze file is missing its header");
+			}
+			header.flip();
+			long rows = header.getLong();
+			long cols = header.getLong();
+			if (rows < 3 || cols < 3) {
+				throw new IOException("maze must be at least 3 by 3, got " + rows + " by " + cols);
+			}
+			return new BitMaze(channel, rows, cols);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	// Writes maze to filename in the format open reads, '#' being a wall
+	public static void write(char[][] maze, String filename) throws IOException {
+		long cols = maze[0].length;
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+			buffer.putLong(maze.length).putLong(cols);
+			int bits = 0;
+			int count = 0;
+			for (char[] line : maze) {
+				for (char c : line) {
+					if (c == '#') bits |= 1 << count;
+					if (++count == 8) {
+						buffer.put((byte) bits);
+						bits = count = 0;
+						if (!buffer.hasRemaining()) drain(channel, buffer);
+					}
+				}
+			}
+			if (count > 0) buffer.put((byte) bits);
+			drain(channel, buffer);
+		}
+	}
+
+	// Returns true when the cell numbered row * cols + col is a wall
+	public boolean isWall(long cell) {
+		long index = cell >>> 3;
+		return ((chunks[(int) (index >>> CellStore.CHUNK_SHIFT)].get((int) (index & CellStore.CHUNK_MASK)) >>> (cell & 7)) & 1) != 0;
+	}
+
+	public boolean isWall(long row, long col) {
+		return isWall(row * cols + col);
+	}
+
+	// BFS from (1, 1) to (rows - 2, cols - 2) straight off the mapped file.
+	// Instead of distances it keeps 1 bit per cell for seen and 2 bits for
+	// the move that got there, and follows those back from the end, so the
+	// search needs 3 bits per cell on top of the queue. With offHeap those
+	// bits live in direct buffers outside the Java heap. The cells on a
+	// shortest path, start and end included, are written to filename as
+	// big-endian longs. Returns the number of cells expanded, or -1 if the
+	// end can't be reached, in which case filename isn't touched.
+	// Assume: the maze is walled all the way round
+	// Runtime: O(rows * cols)
+	public long solve(boolean offHeap, String filename) throws IOException {
+		long cells = rows * cols;
+		long start = cols + 1;
+		long end = (rows - 2) * cols + cols - 2;
+		// Maze.MOVE_SET as cell offsets
+		long[] offsets = { 1, -1, cols, -cols };
+		CellStore seen = new CellStore(cells, 1, offHeap);
+		CellStore move = new CellStore(cells, 2, offHeap);
+
+		long[] queue = new long[64];
+		int head = 0;
+		int count = 1;
+		queue[0] = start;
+		seen.set(start, 1);
+		long expanded = 0;
+
+		search:
+		while (count > 0 && start != end) {
+			long cell = queue[head];
+			head = (head + 1) & (queue.length - 1);
+			count--;
+			expanded++;
+			for (int i = 0; i < offsets.length; i++) {
+				long neighbor = cell + offsets[i];
+				if (seen.get(neighbor) != 0 || isWall(neighbor)) continue;
+				seen.set(neighbor, 1);
+				move.set(neighbor, i);
+				if (neighbor == end) break search;
+				if (count == queue.length) {
+					queue = grow(queue, head);
+					head = 0;
+				}
+				queue[(head + count) & (queue.length - 1)] = neighbor;
+				count++;
+			}
+		}
+		if (seen.get(end) == 0) {
+			return -1;
+		}
+		writePath(move, offsets, start, end, filename);
+		return expanded;
+	}
+
+	// Follows the moves back from end twice: once to count the cells on the
+	// path, then again writing each cell at its place in the file, so the
+	// path never has to fit in memory. The cells are gathered back to front
+	// in a direct buffer and each full buffer goes out with one positional
+	// write.
+	private static void writePath(CellStore move, long[] offsets, long start, long end,
+			String filename) throws IOException {
+		long length = 1;
+		for (long cell = end; cell != start; cell -= offsets[move.get(cell)]) {
+			length++;
+		}
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+			int slot = buffer.capacity();
+			long index = length;   // place in the path of the cell in slot
+			for (long cell = end; ; cell -= offsets[move.get(cell)]) {
+				slot -= Long.BYTES;
+				index--;
+				buffer.putLong(slot, cell);
+				if (slot == 0 || cell == start) {
+					buffer.limit(buffer.capacity()).position(slot);
+					long position = index * Long.BYTES;
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+					buffer.clear();
+					slot = buffer.capacity();
+				}
+				if (cell == start) break;
+			}
+		}
+	}
+
+	// Closes the file, the mappings themselves go once they are garbage collected
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Writes everything in buffer to channel and empties it
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// Doubles a full ring buffer, unwrapping it so the oldest entry is at 0
+	private static long[] grow(long[] queue, int head) {
+		long[] bigger = new long[queue.length * 2];
+		System.arraycopy(queue, head, bigger, 0, queue.length - head);
+		System.arraycopy(queue, 0, bigger, queue.length - head, head);
+		return bigger;
+	}
+}
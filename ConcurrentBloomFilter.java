@@ -0,0 +1,124 @@
+// Filename: ConcurrentBloomFilter.java
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Thread-safe version of BitBloomFilter. The bits live in an AtomicLongArray
+// and each bit is set with a compare-and-set on its word, so any number of
+// threads can add and check items at the same time without locks and without
+// losing each other's bits. Filters with the same size can be merged, which
+// lets every thread fill its own filter and combine them afterwards.
+public class ConcurrentBloomFilter<T> {
+
+	final AtomicLongArray bits;  // the filter's bits, 64 per long
+	final long numBits;          // number of bits actually used
+	final int numHashes;         // bits set per item
+	final long expected;         // items the filter was sized for
+	final LongAdder inserted = new LongAdder(); // adds that set a new bit
+
+	// Sizes the filter so that after expected items the chance of a false
+	// positive is about fpp
+	// Assume: expected > 0 and 0 < fpp < 1, else IllegalArgumentException
+	public ConcurrentBloomFilter(long expected, double fpp) {
+		this.expected = expected;
+		numBits = BitBloomFilter.optimalNumBits(expected, fpp);
+		numHashes = BitBloomFilter.optimalNumHashes(expected, numBits);
+		bits = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+	}
+
+	// Adding data to the filter, returns false if it was already there
+	// (or looked like it was, because of a false positive)
+	// Runtime: O(k), k = number of hashes, plus retries when another thread
+	// changes the same word at the same time
+	public boolean add(T data) {
+		return addLong(BitBloomFilter.keyOf(data));
+	}
+
+	// Checking to see if data has been stored already
+	// Runtime: O(k), k = number of hashes
+	public boolean contains(T data) {
+		return containsLong(BitBloomFilter.keyOf(data));
+	}
+
+	// Same as add(T) for a primitive key, so callers don't have to box it.
+	// addLong(x) and add(Long.valueOf(x)) set the same bits.
+	public boolean addLong(long key) {
+		boolean added = BitBloomFilter.probe(key, numHashes, numBits, false, this::setBit);
+		if (added)
+			inserted.increment();
+		return added;
+	}
+
+	// Same as contains(T) for a primitive key
+	public boolean containsLong(long key) {
+		return !BitBloomFilter.probe(key, numHashes, numBits, true,
+				(word, mask) -> (bits.get(word) & mask) == 0);
+	}
+
+	// Adds every item, returns how many of them weren't in the filter yet
+	public int addAll(T[] items) {
+		int added = 0;
+		for (T item : items)
+			if (add(item))
+				added++;
+		return added;
+	}
+
+	// Checks every item, result[i] tells whether items[i] is in the filter
+	public boolean[] contains(T[] items) {
+		boolean[] result = new boolean[items.length];
+		for (int i = 0; i < items.length; i++)
+			result[i] = contains(items[i]);
+		return result;
+	}
+
+	// ORs the other filter's bits into this one, afterwards this filter
+	// contains everything either of them contained. Safe to call while
+	// other threads are still adding to either filter.
+	// Assume: other was built with the same expected count and fpp, else
+	// IllegalArgumentException
+	// Runtime: O(m / 64), m = number of bits
+	public void merge(ConcurrentBloomFilter<T> other) {
+		if (other.numBits != numBits || other.numHashes != numHashes)
+			throw new IllegalArgumentException("can only merge filters of the same size");
+		for (int i = 0; i < bits.length(); i++) {
+			long mask = other.bits.get(i);
+			if (mask != 0)
+				setBit(i, mask);
+		}
+		inserted.add(other.inserted.sum());
+	}
+
+	// Returns the number of adds that changed the filter, which is an
+	// estimate of how many distinct items it holds
+	public long insertions() {
+		return inserted.sum();
+	}
+
+	// Returns the number of items the filter was sized for
+	public long capacity() {
+		return expected;
+	}
+
+	// Returns the number of bits the filter uses
+	public long bitCount() {
+		return numBits;
+	}
+
+	// Returns the number of bits set for each item
+	public int hashCount() {
+		return numHashes;
+	}
+
+	// Sets the bits of mask in the given word, retrying if another thread
+	// changed the word in between. Returns true if any of them was unset.
+	private boolean setBit(int word, long mask) {
+		long old;
+		do {
+			old = bits.get(word);
+			if ((old | mask) == old)
+				return false;
+		} while (!bits.compareAndSet(word, old, old | mask));
+		return true;
+	}
+}
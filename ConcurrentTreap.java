@@ -0,0 +1,90 @@
+// Filename: ConcurrentTreap.java
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Treap that many threads can share. Nodes are never modified: an add or
+// remove builds the next PersistentTreap version, which copies the O(log(n))
+// nodes on the path it changes and shares every other subtree, and then
+// swaps in the new root with a compare-and-set. Readers just follow whatever
+// root they saw, so contains never waits on a lock or retries, and writers
+// never block readers. A writer that loses the race to another writer
+// rebuilds its path against the new root and tries again.
+public class ConcurrentTreap<T extends Comparable<T>> {
+
+	private final AtomicReference<PersistentNode<T>> root = new AtomicReference<PersistentNode<T>>();
+
+	// Adds data with a random priority, returns false if it was already there
+	// Assume: data being passed isn't null reference
+	// Runtime: O(log(n)) per attempt
+	public boolean add(T data) {
+		return add(data, ThreadLocalRandom.current().nextInt());
+	}
+
+	// Adds data with a priority chosen by the caller, returns false if it
+	// was already there
+	// Assume: data being passed isn't null reference
+	public boolean add(T data, int priority) {
+		while (true) {
+			PersistentNode<T> old = root.get();
+			PersistentNode<T> updated = PersistentTreap.insert(old, data, priority);
+			if (updated == old) {
+				return false;	// already in treap
+			}
+			if (root.compareAndSet(old, updated)) {
+				return true;
+			}
+		}
+	}
+
+	// Removes data, returns false if it wasn't there
+	// Assume: data being passed isn't null reference
+	// Runtime: O(log(n)) per attempt
+	public boolean remove(T data) {
+		while (true) {
+			PersistentNode<T> old = root.get();
+			PersistentNode<T> updated = PersistentTreap.delete(old, data);
+			if (updated == old) {
+				return false;	// never found a match
+			}
+			if (root.compareAndSet(old, updated)) {
+				return true;
+			}
+		}
+	}
+
+	// Searches BST style for data in the current tree. Wait-free, it never
+	// takes a lock or retries.
+	// Assume: that data isn't null pointer reference
+	// Runtime: O(log(n))
+	public boolean contains(T data) {
+		PersistentNode<T> iterNode = root.get();
+		while (iterNode != null) {
+			int result = data.compareTo(iterNode.data);
+			if (result == 0) {
+				return true;
+			}
+			iterNode = (result < 0) ? iterNode.left : iterNode.right;
+		}
+		return false;
+	}
+
+	// Returns the number of items in the current tree
+	public int size() {
+		PersistentNode<T> top = root.get();
+		return (top == null) ? 0 : top.size;
+	}
+
+	// Returns the current root. The tree under it never changes, so it can
+	// be read for as long as needed while writers carry on.
+	public PersistentNode<T> getRoot() {
+		return root.get();
+	}
+
+	// Returns the current version of the treap, which can be iterated or
+	// queried without seeing any later add or remove
+	// Runtime: O(1)
+	public PersistentTreap<T> snapshot() {
+		return new PersistentTreap<T>(root.get());
+	}
+}
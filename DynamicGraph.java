@@ -0,0 +1,297 @@
+// Filename: DynamicGraph.java
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Directed acyclic graph that can change after it is built. A topological
+// order of the vertices is kept up to date as edges come and go using the
+// Pearce-Kelly dynamic topological sort: adding x -> y only reorders the
+// vertices that sit between y and x in the current order, and an edge that
+// would close a cycle is rejected right away. Because the graph can never
+// hold a cycle, hasTopoSort and hasTopoPath don't need a rebuild.
+// Vertices are 1-based, like the graph files.
+public class DynamicGraph {
+
+	int size;          // number of vertices
+	int[][] out, in;   // out[v] and in[v] hold the targets and sources of v's edges
+	int[] outDeg, inDeg;
+	int[] ord;         // ord[v] is v's position in the topological order
+	int[] node;        // node[i] is the vertex at position i of the order
+
+	// scratch space for the searches, reset after every use
+	private boolean[] visited;
+	private int[] stack;
+	private int[] deltaF = new int[16], deltaB = new int[16];
+	private int numF, numB;
+
+	// Creates a graph of the given number of vertices without any edges
+	public DynamicGraph(int size) {
+		this.size = size;
+		int capacity = Math.max(size, 16);
+		out = new int[capacity][];
+		in = new int[capacity][];
+		outDeg = new int[capacity];
+		inDeg = new int[capacity];
+		ord = new int[capacity];
+		node = new int[capacity];
+		visited = new boolean[capacity];
+		stack = new int[capacity];
+		for (int i = 0; i < size; i++) {
+			out[i] = new int[2];
+			in[i] = new int[2];
+			ord[i] = node[i] = i;
+		}
+	}
+
+	// Reads in a graph file and orders it with Kahn's algorithm
+	// Throws IllegalArgumentException if the graph in the file has a cycle
+	// Assume: the file we are reading from exists
+	public DynamicGraph(String filename) throws IOException {
+		this(Graph.read(filename));
+	}
+
+	// Assume: graph doesn't have a cycle, else IllegalArgumentException
+	DynamicGraph(Graph graph) {
+		this(graph.size);
+		int[] order = new int[graph.size];
+		if (LevelKahn.sort(graph, order, new int[graph.size]) != graph.size)
+			throw new IllegalArgumentException("graph has a cycle");
+		for (int i = 0; i < graph.size; i++) {
+			node[i] = order[i];
+			ord[order[i]] = i;
+		}
+		for (int v = 0; v < graph.size; v++)
+			for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++)
+				if (!hasEdge(v, graph.targets[e]))
+					link(v, graph.targets[e]);
+	}
+
+	// Returns the number of vertices in the graph
+	public int size() {
+		return size;
+	}
+
+	// Adds a vertex without any edges at the end of the order and
+	// returns its (1-based) number
+	// Runtime: O(1) amortized
+	public int addVertex() {
+		if (size == ord.length) {
+			int capacity = size * 2;
+			out = Arrays.copyOf(out, capacity);
+			in = Arrays.copyOf(in, capacity);
+			outDeg = Arrays.copyOf(outDeg, capacity);
+			inDeg = Arrays.copyOf(inDeg, capacity);
+			ord = Arrays.copyOf(ord, capacity);
+			node = Arrays.copyOf(node, capacity);
+			visited = new boolean[capacity];
+			stack = new int[capacity];
+		}
+		out[size] = new int[2];
+		in[size] = new int[2];
+		ord[size] = node[size] = size;
+		return ++size;
+	}
+
+	// Adds the edge x -> y unless it would create a cycle. Returns true if
+	// the edge is in the graph afterwards, false if it was rejected.
+	// Assume: x and y are both in the graph
+	// Runtime: O(1) when y already comes after x in the order, otherwise
+	// proportional to the edges of the vertices between y and x in the order
+	public boolean addEdge(int x, int y) {
+		int u = x - 1, v = y - 1;
+		if (u == v)
+			return false;
+		if (hasEdge(u, v))
+			return true;
+
+		int lb = ord[v], ub = ord[u];
+		if (lb < ub) {
+			// the order would break, find what y reaches before x's position
+			// and what reaches x after y's position
+			if (!forward(v, ub)) {
+				for (int i = 0; i < numF; i++)
+					visited[deltaF[i]] = false;
+				return false;   // y reaches x, so x -> y closes a cycle
+			}
+			backward(u, lb);
+			reorder();
+		}
+		link(u, v);
+		return true;
+	}
+
+	// Removes the edge x -> y, returns false if there wasn't one. Taking an
+	// edge away never invalidates the order.
+	// Assume: x and y are both in the graph
+	// Runtime: O(out-degree of x + in-degree of y)
+	public boolean removeEdge(int x, int y) {
+		int u = x - 1, v = y - 1;
+		if (!remove(out[u], outDeg[u], v))
+			return false;
+		outDeg[u]--;
+		remove(in[v], inDeg[v], u);
+		inDeg[v]--;
+		return true;
+	}
+
+	// Returns true if the edge x -> y is in the graph
+	// Assume: x and y are both in the graph
+	public boolean containsEdge(int x, int y) {
+		return hasEdge(x - 1, y - 1);
+	}
+
+	// Returns true if x can come before y in some topological sort of the
+	// graph, which is the case unless y is an ancestor of x
+	// Assume: x and y are both in the graph
+	// Runtime: O(1) when y already comes after x in the order, otherwise a
+	// search limited to vertices between y and x in the order
+	public boolean hasTopoSort(int x, int y) {
+		int u = x - 1, v = y - 1;
+		if (ord[u] < ord[v] || u == v)
+			return true;
+		boolean reached = !forward(v, ord[u]);
+		for (int i = 0; i < numF; i++)
+			visited[deltaF[i]] = false;
+		return !reached;
+	}
+
+	// Returns true if the graph has exactly one topological sort, which
+	// is the case when every vertex has an edge to the next one in the order
+	// Runtime: O(|V| + |E|)
+	public boolean hasTopoPath() {
+		if (size == 0)
+			return false;
+		for (int i = 0; i + 1 < size; i++)
+			if (!hasEdge(node[i], node[i + 1]))
+				return false;
+		return true;
+	}
+
+	// Returns the vertices (1-based) in the current topological order
+	public int[] topologicalOrder() {
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++)
+			result[i] = node[i] + 1;
+		return result;
+	}
+
+	// Searches forward from v through vertices at positions below ub,
+	// collecting them in deltaF. Returns false as soon as it hits the
+	// vertex at position ub, which means there would be a cycle.
+	private boolean forward(int v, int ub) {
+		numF = 0;
+		int top = 0;
+		stack[top++] = v;
+		visited[v] = true;
+		deltaF = add(deltaF, numF++, v);
+		while (top > 0) {
+			int w = stack[--top];
+			for (int i = 0; i < outDeg[w]; i++) {
+				int next = out[w][i];
+				if (ord[next] == ub)
+					return false;
+				if (!visited[next] && ord[next] < ub) {
+					visited[next] = true;
+					deltaF = add(deltaF, numF++, next);
+					stack[top++] = next;
+				}
+			}
+		}
+		return true;
+	}
+
+	// Searches backward from u through vertices at positions above lb,
+	// collecting them in deltaB
+	private void backward(int u, int lb) {
+		numB = 0;
+		int top = 0;
+		stack[top++] = u;
+		visited[u] = true;
+		deltaB = add(deltaB, numB++, u);
+		while (top > 0) {
+			int w = stack[--top];
+			for (int i = 0; i < inDeg[w]; i++) {
+				int prev = in[w][i];
+				if (!visited[prev] && lb < ord[prev]) {
+					visited[prev] = true;
+					deltaB = add(deltaB, numB++, prev);
+					stack[top++] = prev;
+				}
+			}
+		}
+	}
+
+	// Gives the positions used by deltaB and deltaF back out, deltaB first,
+	// so everything that reaches x now comes before everything y reaches.
+	// Both sets keep their own relative order.
+	private void reorder() {
+		sortByOrd(deltaB, numB);
+		sortByOrd(deltaF, numF);
+		int total = numB + numF;
+		int[] slots = new int[total];
+		int[] vertices = new int[total];
+		for (int i = 0; i < numB; i++) {
+			vertices[i] = deltaB[i];
+			slots[i] = ord[deltaB[i]];
+		}
+		for (int i = 0; i < numF; i++) {
+			vertices[numB + i] = deltaF[i];
+			slots[numB + i] = ord[deltaF[i]];
+		}
+		Arrays.sort(slots);
+		for (int i = 0; i < total; i++) {
+			ord[vertices[i]] = slots[i];
+			node[slots[i]] = vertices[i];
+			visited[vertices[i]] = false;
+		}
+	}
+
+	// Sorts the first count vertices of list by their current position
+	private void sortByOrd(int[] list, int count) {
+		// sort the positions and map them back to the vertices sitting there
+		for (int i = 0; i < count; i++)
+			list[i] = ord[list[i]];
+		Arrays.sort(list, 0, count);
+		for (int i = 0; i < count; i++)
+			list[i] = node[list[i]];
+	}
+
+	private boolean hasEdge(int u, int v) {
+		// look through the shorter of the two lists
+		if (outDeg[u] <= inDeg[v]) {
+			for (int i = 0; i < outDeg[u]; i++)
+				if (out[u][i] == v)
+					return true;
+		} else {
+			for (int i = 0; i < inDeg[v]; i++)
+				if (in[v][i] == u)
+					return true;
+		}
+		return false;
+	}
+
+	private void link(int u, int v) {
+		out[u] = add(out[u], outDeg[u]++, v);
+		in[v] = add(in[v], inDeg[v]++, u);
+	}
+
+	// Stores val at list[index], growing the list first if it is full
+	private static int[] add(int[] list, int index, int val) {
+		if (index == list.length)
+			list = Arrays.copyOf(list, list.length * 2);
+		list[index] = val;
+		return list;
+	}
+
+	// Removes val from the first count entries of list by moving the last
+	// entry into its place, returns false if val isn't there
+	private static boolean remove(int[] list, int count, int val) {
+		for (int i = 0; i < count; i++) {
+			if (list[i] == val) {
+				list[i] = list[count - 1];
+				return true;
+			}
+		}
+		return false;
+	}
+}
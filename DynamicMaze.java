@@ -0,0 +1,242 @@
+// Filename: DynamicMaze.java
+
+import java.util.Arrays;
+
+// Keeps the shortest path from (1, 1) to (rows - 2, cols - 2) marked on a
+// maze while walls are added and removed, using Lifelong Planning A*
+// (Koenig and Likhachev). Every cell has g, the distance the last search
+// settled on, and rhs, the distance its neighbors' g values imply right now.
+// A wall change only disturbs rhs next to the cell that changed, and only
+// cells where g and rhs disagree go on the heap, so a small edit re-expands
+// the part of the maze whose distances actually changed rather than
+// flooding it all again. Cells are numbered row * cols + col.
+public class DynamicMaze {
+
+	static final int INF = Integer.MAX_VALUE / 4;
+
+	final char[][] maze;
+	final int rows;
+	final int cols;
+	private final int start;
+	private final int end;
+	private final int[] offsets;
+	private final boolean[] wall;
+	private final int[] g;
+	private final int[] rhs;
+
+	// indexed binary min-heap of cells by key, pos[cell] is where the cell
+	// sits in heap or -1 when it isn't there
+	private final int[] heap;
+	private final int[] pos;
+	private final long[] key;
+	private int heapSize;
+
+	private int[] path = new int[0];   // cells marked on the maze, start and end left out
+	int expanded;                      // cells expanded by the last search
+
+	// Solves maze and marks the path like Maze.solve, keeping hold of maze
+	// so later changes can update it
+	// Assume: maze is rectangular, at least 3 by 3 and walled all the way round
+	// Runtime: O(rows * cols * log(rows * cols))
+	public DynamicMaze(char[][] maze) {
+		this.maze = maze;
+		rows = maze.length;
+		cols = maze[0].length;
+		if ((long) rows * cols > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("maze has too many cells to number with an int");
+		}
+		int cells = rows * cols;
+		start = cols + 1;
+		end = (rows - 2) * cols + cols - 2;
+		offsets = new int[] { 1, -1, cols, -cols };
+		wall = new boolean[cells];
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < cols; col++) {
+				wall[row * cols + col] = maze[row][col] == '#';
+			}
+		}
+		g = new int[cells];
+		rhs = new int[cells];
+		Arrays.fill(g, INF);
+		Arrays.fill(rhs, INF);
+		heap = new int[cells];
+		pos = new int[cells];
+		Arrays.fill(pos, -1);
+		key = new long[cells];
+
+		rhs[start] = 0;
+		heapInsert(start);
+		computeShortestPath();
+		markPath();
+	}
+
+	// Puts up (isWall true) or knocks down a wall at (row, col), then
+	// repairs the distances and moves the marked path. Returns the number of
+	// cells expanded to do it.
+	// Runtime: proportional to the cells whose distance changed, times log
+	public int setWall(int row, int col, boolean isWall) {
+		if (row <= 0 || row >= rows - 1 || col <= 0 || col >= cols - 1) {
+			throw new IllegalArgumentException("(" + row + ", " + col + ") isn't inside the outer wall");
+		}
+		int cell = row * cols + col;
+		if (cell == start || cell == end) {
+			throw new IllegalArgumentException("can't wall in the start or end");
+		}
+		if (wall[cell] == isWall) {
+			return 0;
+		}
+		wall[cell] = isWall;
+		maze[row][col] = isWall ? '#' : ' ';
+		updateCell(cell);
+		for (int i = 0; i < offsets.length; i++) {
+			updateCell(cell + offsets[i]);
+		}
+		computeShortestPath();
+		markPath();
+		return expanded;
+	}
+
+	// Returns the number of moves from start to end, or -1 if walls cut
+	// them apart
+	public int distance() {
+		return (g[end] >= INF) ? -1 : g[end];
+	}
+
+	// Returns the cells on the current shortest path, start and end left out
+	public int[] path() {
+		return path.clone();
+	}
+
+	// Pops inconsistent cells in key order until the end is consistent and
+	// nothing left on the heap could give it a shorter path. A cell whose rhs
+	// dropped takes it as its g; one whose rhs went up is reset to INF and
+	// goes back on the heap to be settled again.
+	private void computeShortestPath() {
+		expanded = 0;
+		while (heapSize > 0 && (key[heap[0]] < keyOf(end) || rhs[end] != g[end])) {
+			int cell = heapPop();
+			expanded++;
+			if (g[cell] > rhs[cell]) {
+				g[cell] = rhs[cell];
+			} else {
+				g[cell] = INF;
+				updateCell(cell);
+			}
+			for (int i = 0; i < offsets.length; i++) {
+				updateCell(cell + offsets[i]);
+			}
+		}
+	}
+
+	// Recomputes rhs of cell from its neighbors and puts it on the heap if
+	// and only if g and rhs now disagree
+	private void updateCell(int cell) {
+		if (cell != start) {
+			int best = INF;
+			if (!wall[cell]) {
+				for (int i = 0; i < offsets.length; i++) {
+					int neighbor = cell + offsets[i];
+					if (!wall[neighbor] && g[neighbor] + 1 < best) {
+						best = g[neighbor] + 1;
+					}
+				}
+			}
+			rhs[cell] = best;
+		}
+		if (pos[cell] >= 0) {
+			heapRemove(cell);
+		}
+		if (g[cell] != rhs[cell]) {
+			heapInsert(cell);
+		}
+	}
+
+	// Heap key: smallest estimated total first, then smallest distance so far
+	private long keyOf(int cell) {
+		long dist = Math.min(g[cell], rhs[cell]);
+		long total = dist + Math.abs(cell / cols - end / cols) + Math.abs(cell % cols - end % cols);
+		return (total << 32) | dist;
+	}
+
+	// Unmarks the old path and marks the new one, walking back from the end
+	// to whichever neighbor has the smallest g
+	private void markPath() {
+		for (int cell : path) {
+			if (maze[cell / cols][cell % cols] == '.') {
+				maze[cell / cols][cell % cols] = ' ';
+			}
+		}
+		if (g[end] >= INF) {
+			path = new int[0];
+			return;
+		}
+		int[] next = new int[Math.max(g[end] - 1, 0)];
+		int cell = end;
+		for (int i = next.length - 1; i >= 0; i--) {
+			int best = -1;
+			for (int k = 0; k < offsets.length; k++) {
+				int neighbor = cell + offsets[k];
+				if (!wall[neighbor] && (best == -1 || g[neighbor] < g[best])) {
+					best = neighbor;
+				}
+			}
+			cell = best;
+			next[i] = cell;
+			maze[cell / cols][cell % cols] = '.';
+		}
+		path = next;
+	}
+
+	private void heapInsert(int cell) {
+		key[cell] = keyOf(cell);
+		int i = heapSize++;
+		heap[i] = cell;
+		pos[cell] = i;
+		siftUp(i);
+	}
+
+	private int heapPop() {
+		int top = heap[0];
+		heapRemove(top);
+		return top;
+	}
+
+	// Takes cell out of the heap, filling its slot with the last entry
+	private void heapRemove(int cell) {
+		int i = pos[cell];
+		pos[cell] = -1;
+		int last = heap[--heapSize];
+		if (i == heapSize) {
+			return;
+		}
+		heap[i] = last;
+		pos[last] = i;
+		siftUp(i);
+		siftDown(pos[last]);
+	}
+
+	private void siftUp(int i) {
+		int cell = heap[i];
+		while (i > 0 && key[heap[(i - 1) / 2]] > key[cell]) {
+			heap[i] = heap[(i - 1) / 2];
+			pos[heap[i]] = i;
+			i = (i - 1) / 2;
+		}
+		heap[i] = cell;
+		pos[cell] = i;
+	}
+
+	private void siftDown(int i) {
+		int cell = heap[i];
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && key[heap[child + 1]] < key[heap[child]]) child++;
+			if (key[heap[child]] >= key[cell]) break;
+			heap[i] = heap[child];
+			pos[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = cell;
+		pos[cell] = i;
+	}
+}
@@ -12,11 +12,15 @@
 
 import java.io.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 // Implementing a Generic Class that holds data and 2 child nodes
 class Node<T> {
 	T data;
 	Node<T> left, right;
+	int height;	// height of the subtree under this node, 0 for a leaf
 
 	// setting data to whatever was passed in constructor
 	Node(T data) {
@@ -28,75 +32,105 @@ class Node<T> {
 // BST can store objects of any class as long as that class implements Comparable Interface
 // Implementing good coding standard, by keeping all functions that use private data unaccessible
 // from user, so people can't as easily maliciously modify code/data
-public class GenericBST<T extends Comparable<T>> {
+public class GenericBST<T extends Comparable<T>> implements Iterable<T> {
 	private Node<T> root;	// root of the tree of whatever objects of class storing
+	private int count;	// number of nodes in the tree
+	private final boolean balanced;	// keep the tree AVL balanced after every change
+	private long rotations;	// number of rotations done to keep the tree balanced
+	@SuppressWarnings("unchecked")
+	private Node<T>[] path = (Node<T>[]) new Node<?>[32];	// explicit stack of the nodes above us
 
-	// function the user can call, to protect from real insert function
-	public void insert(T data) {
-		root = insert(root, data);
+	// plain binary search tree, nodes go wherever insertion order puts them
+	public GenericBST() {
+		this(false);
 	}
 
-	// recursively function that returns a Node<T> of object
+	// if balanced the tree is kept AVL balanced (the heights of every node's
+	// subtrees differ by at most one), so insert, delete and contains are
+	// O(log(n)) whatever order the data comes in
+	public GenericBST(boolean balanced) {
+		this.balanced = balanced;
+	}
+
+	// function the user can call, to protect from real insert function
+	// walks down to the null child where data belongs, remembering the path,
+	// hangs a new Node<T> there and then fixes up the heights on the path
 	// don't insert duplicate nodes (i.e) root.data == data
-	private Node<T> insert(Node<T> root, T data) {
+	public void insert(T data) {
 		if (root == null) {	// if empty tree, set as root
-			return new Node<T>(data);
+			root = new Node<T>(data);
+			count++;
+			return;
 		}
-		
-		// finding if data comes before node.data inserting
-		int result = data.compareTo(root.data); 
-		
-		if (result < 0) {	// inserting data before current node
-			root.left = insert(root.left, data);
-		} else if (result > 0) {	// inserting data after current node
-			root.right = insert(root.right, data);
-		} 
-		return root;
+
+		int depth = 0;
+		Node<T> node = root;
+		while (true) {
+			// finding if data comes before node.data inserting
+			int result = data.compareTo(node.data);
+			if (result == 0) {	// already in tree
+				clear(depth);
+				return;
+			}
+
+			path = push(path, depth++, node);
+			if (result < 0) {	// inserting data before current node
+				if (node.left == null) {
+					node.left = new Node<T>(data);
+					break;
+				}
+				node = node.left;
+			} else {	// inserting data after current node
+				if (node.right == null) {
+					node.right = new Node<T>(data);
+					break;
+				}
+				node = node.right;
+			}
+		}
+		count++;
+		retrace(depth);
 	}
 	
 	// function the user can call, to protect code from real(private) delete function
-	public void delete(T data) {
-		root = delete(root, data);
-	}
-
-	// recurssive function that deletes a node from tree if node looking for in tree
 	// implements binary search to find a match, once find deleting node replace it with
 	// largest child node if has any, else just get rid of deleting node
-	private Node<T> delete(Node<T> root, T data) {
-		if (root == null) {	// if empty return null pointer
-			return null;
-		}
-		
-		int result = data.compareTo(root.data);	// finding if deleting node before or after current node	
-		
-		if (result < 0) {	// deleting node before current node
-			root.left = delete(root.left, data);
-		} else if (result > 0) {	// deleting node after current node
-			root.right = delete(root.right, data);
-		} else {	// found the node we are looking for
-			if (root.left == null && root.right == null) {	// has no children, getting rid of node
-				return null;
-			} else if (root.right == null) {	// replace current node with left child if no right child
-				return root.left;
-			} else if (root.left == null) {		// replace current node with right child if no left child
-				return root.right;
-			} else {							// else delete the largest sub-child under deleting node
-				root.data = findMax(root.left);
-				root.left = delete(root.left, (T)root.data);
+	public void delete(T data) {
+		int depth = 0;
+		Node<T> node = root;
+
+		// binary search for the deleting node, keeping track of the path to it
+		while (node != null) {
+			int result = data.compareTo(node.data);	// finding if deleting node before or after current node
+			if (result == 0) {
+				break;
 			}
+			path = push(path, depth++, node);
+			node = (result < 0) ? node.left : node.right;
 		}
 
-		return root;
-	}
+		if (node == null) {	// never found it, nothing to delete
+			clear(depth);
+			return;
+		}
 
-	// This method assumes root is non-null, since this is only called by
-	// delete() on the left subtree, and only when that subtree is non-empty.
-	private T findMax(Node<T> root) {
-		while (root.right != null) {	// go to the most right node until hit null child
-			root = root.right;
+		if (node.left != null && node.right != null) {
+			// replace the data with the largest node under the left child, then
+			// delete that node instead, it has no right child by definition
+			path = push(path, depth++, node);
+			Node<T> max = node.left;
+			while (max.right != null) {	// go to the most right node until hit null child
+				path = push(path, depth++, max);
+				max = max.right;
+			}
+			node.data = max.data;
+			node = max;
 		}
 
-		return (T) root.data;
+		// zero or one child, replace the node with whichever child it has
+		relink(depth, node, (node.left != null) ? node.left : node.right);
+		count--;
+		retrace(depth);
 	}
 
 	// function the user can call, to protect code from real(private) delete function
@@ -105,76 +139,408 @@ public class GenericBST<T extends Comparable<T>> {
 		return contains(root, data);
 	}
 
-	// implements binary search to find if given data is found in binary tree
+	// implements iterative binary search to find if given data is found in binary tree
 	// return true if data is in binary tree, else return false if don't find or have empty tree
 	private boolean contains(Node<T> root, T data) {
-		if (root == null) {
-			return false;	// we never find a match
-		} 
-		
-		int result = data.compareTo(root.data);	// finding if desired data before or after current node's data
-		
-		if (result < 0) {						// desired data precedes current node's data, go left
-			return contains(root.left, data);
-		} else if (result > 0) {				// desired data follows after current node's data, go right
-			return contains(root.right, data);
-		} else {								// current node's data and data match, we have a match
-			return true;
+		while (root != null) {
+			int result = data.compareTo(root.data);	// finding if desired data before or after current node's data
+
+			if (result < 0) {						// desired data precedes current node's data, go left
+				root = root.left;
+			} else if (result > 0) {				// desired data follows after current node's data, go right
+				root = root.right;
+			} else {								// current node's data and data match, we have a match
+				return true;
+			}
 		}
+		return false;	// we never find a match
 	}
 
-	// will print out the in-order traversal of tree
-	// function the user can call, to protect from real(private) in-order function that does recursive calls
-	public void inorder() {
-		System.out.print("In-order Traversal:");
-		inorder(root);
-		System.out.println();
+	// Returns the number of nodes in the tree
+	public int size() {
+		return count;
 	}
 
-	// Traversal path: go Left, show Center, go Right
-	private void inorder(Node<T> root) {
-		if (root == null)	// exit if reach dead-end, null pointer
-			return;
+	// Returns the height of the tree, -1 if it's empty
+	// Runtime: O(1), every node keeps the height of its subtree
+	public int height() {
+		return height(root);
+	}
 
-		inorder(root.left);
-		System.out.print(" " + root.data);
-		inorder(root.right);
+	// Returns the number of rotations done so far to keep the tree balanced
+	public long rotations() {
+		return rotations;
 	}
 
-	// will print out the pre-order traversal of tree
-	// function the user can call, to protect from real(private) pre-order function that does recursive calls
-	public void preorder() {
-		System.out.print("Pre-order Traversal:");
-		preorder(root);
-		System.out.println();
+	// goes back up the first depth nodes of the path after a change below
+	// them, updating each height and rebalancing if we are balanced, stops
+	// early once a subtree's height comes out the same as before
+	private void retrace(int depth) {
+		int length = depth;
+		while (depth > 0) {
+			Node<T> node = path[--depth];
+			int oldHeight = node.height;
+			update(node);
+			Node<T> top = balanced ? rebalance(node) : node;
+			if (top != node) {
+				relink(depth, node, top);
+			}
+			if (top.height == oldHeight) {
+				break;
+			}
+		}
+		clear(length);
 	}
 
-	// Traversal path: show Center, go Left, go Right
-	private void preorder(Node<T> root) {
-		if (root == null)	// exit if reach dead-end, null pointer
-			return;
+	// rotates the node's subtree back into AVL balance if its children's
+	// heights differ by two, returns the node now at the top of the subtree
+	private Node<T> rebalance(Node<T> node) {
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1) {	// left side too tall
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = rotateLeft(node.left);
+			}
+			return rotateRight(node);
+		} else if (balance < -1) {	// right side too tall
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rotateRight(node.right);
+			}
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+	// makes node the left child of its right child, returns the right child
+	private Node<T> rotateLeft(Node<T> node) {
+		Node<T> child = node.right;
+		node.right = child.left;
+		child.left = node;
+		update(node);
+		update(child);
+		rotations++;
+		return child;
+	}
+
+	// makes node the right child of its left child, returns the left child
+	private Node<T> rotateRight(Node<T> node) {
+		Node<T> child = node.left;
+		node.left = child.right;
+		child.right = node;
+		update(node);
+		update(child);
+		rotations++;
+		return child;
+	}
+
+	// replaces oldChild with newChild under path[depth - 1], or as the root
+	// when depth is 0
+	private void relink(int depth, Node<T> oldChild, Node<T> newChild) {
+		if (depth == 0) {
+			root = newChild;
+		} else if (path[depth - 1].left == oldChild) {
+			path[depth - 1].left = newChild;
+		} else {
+			path[depth - 1].right = newChild;
+		}
+	}
+
+	// recomputes the node's height from its children's
+	private static <T> void update(Node<T> node) {
+		node.height = Math.max(height(node.left), height(node.right)) + 1;
+	}
+
+	private static <T> int height(Node<T> node) {
+		return (node == null) ? -1 : node.height;
+	}
+
+	// stores node at stack[index], doubling the stack first if it's full
+	private static <T> Node<T>[] push(Node<T>[] stack, int index, Node<T> node) {
+		if (index == stack.length) {
+			stack = Arrays.copyOf(stack, stack.length * 2);
+		}
+		stack[index] = node;
+		return stack;
+	}
+
+	// drops the references left on the path so deleted nodes can be collected
+	private void clear(int depth) {
+		Arrays.fill(path, 0, depth, null);
+	}
 
-		System.out.print(" " + root.data);
-		preorder(root.left);
-		preorder(root.right);
+	// will print out the in-order traversal of tree
+	public void inorder() {
+		print("In-order Traversal:", iterator());
+	}
+
+	// will print out the pre-order traversal of tree
+	public void preorder() {
+		print("Pre-order Traversal:", preorderIterator());
 	}
 
 	// will print out the post-order traversal of tree
-	// function the user can call, to protect from real(private) post-order function that does recursive calls
 	public void postorder() {
-		System.out.print("Post-order Traversal:");
-		postorder(root);
-		System.out.println();
+		print("Post-order Traversal:", postorderIterator());
+	}
+
+	// writes the line as the traversal goes, through a buffer so System.out
+	// isn't hit once per element, and never holds more than the iterator's
+	// stack of nodes however big the tree is
+	private void print(String title, Iterator<T> it) {
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		out.print(title);
+		while (it.hasNext()) {
+			out.print(' ');
+			out.print(it.next());
+		}
+		out.println();
+		// flushed rather than closed, closing would close System.out too
+		out.flush();
+	}
+
+	// The traversals below all use an explicit stack of nodes instead of
+	// recursion. The stack only grows when the tree gets deeper, so stepping
+	// to the next element doesn't allocate anything. Changing the tree while
+	// traversing it gives undefined results.
+
+	// Traversal path: go Left, show Center, go Right
+	public Iterator<T> iterator() {
+		return new InorderIterator();
+	}
+
+	// Traversal path: show Center, go Left, go Right
+	public Iterator<T> preorderIterator() {
+		return new PreorderIterator();
 	}
 
 	// Traversal path: go Left, go Right, show Center
-	private void postorder(Node<T> root) {
-		if (root == null)	// exit if reach dead-end, null pointer
-			return;
+	public Iterator<T> postorderIterator() {
+		return new PostorderIterator();
+	}
+
+	// Hands every element to action in order, without creating an iterator
+	public void forEach(Consumer<? super T> action) {
+		@SuppressWarnings("unchecked")
+		Node<T>[] stack = (Node<T>[]) new Node<?>[32];
+		int top = 0;
+		Node<T> node = root;
+		while (node != null || top > 0) {
+			while (node != null) {	// go Left as far as we can
+				stack = push(stack, top++, node);
+				node = node.left;
+			}
+			node = stack[--top];
+			action.accept(node.data);	// show Center
+			node = node.right;	// go Right
+		}
+	}
+
+	// Splits by subtrees, so a parallel stream hands each thread its own
+	// part of the tree to walk
+	public Spliterator<T> spliterator() {
+		return new InorderSpliterator(root, null, null, count);
+	}
+
+	// Returns a sequential stream of the elements in order, call parallel()
+	// on it to walk the tree with several threads
+	public Stream<T> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	private class InorderIterator implements Iterator<T> {
+		@SuppressWarnings("unchecked")
+		private Node<T>[] stack = (Node<T>[]) new Node<?>[32];	// nodes whose Center we haven't shown yet
+		private int top;
+
+		InorderIterator() {
+			pushLeft(root);
+		}
+
+		public boolean hasNext() {
+			return top > 0;
+		}
 
-		postorder(root.left);
-		postorder(root.right);
-		System.out.print(" " + root.data);
+		public T next() {
+			if (top == 0) {
+				throw new NoSuchElementException();
+			}
+			Node<T> node = stack[--top];
+			stack[top] = null;
+			pushLeft(node.right);
+			return node.data;
+		}
+
+		// pushes node and everything down its left edge
+		private void pushLeft(Node<T> node) {
+			while (node != null) {
+				stack = push(stack, top++, node);
+				node = node.left;
+			}
+		}
+	}
+
+	private class PreorderIterator implements Iterator<T> {
+		@SuppressWarnings("unchecked")
+		private Node<T>[] stack = (Node<T>[]) new Node<?>[32];	// subtrees still to show
+		private int top;
+
+		PreorderIterator() {
+			if (root != null) {
+				stack[top++] = root;
+			}
+		}
+
+		public boolean hasNext() {
+			return top > 0;
+		}
+
+		public T next() {
+			if (top == 0) {
+				throw new NoSuchElementException();
+			}
+			Node<T> node = stack[--top];
+			stack[top] = null;
+			// push Right first so Left comes off the stack first
+			if (node.right != null) {
+				stack = push(stack, top++, node.right);
+			}
+			if (node.left != null) {
+				stack = push(stack, top++, node.left);
+			}
+			return node.data;
+		}
+	}
+
+	private class PostorderIterator implements Iterator<T> {
+		@SuppressWarnings("unchecked")
+		private Node<T>[] stack = (Node<T>[]) new Node<?>[32];	// path from the root to the next node
+		private int top;
+
+		PostorderIterator() {
+			descend(root);
+		}
+
+		public boolean hasNext() {
+			return top > 0;
+		}
+
+		public T next() {
+			if (top == 0) {
+				throw new NoSuchElementException();
+			}
+			Node<T> node = stack[--top];
+			stack[top] = null;
+			// coming back up from the Left, the Right subtree goes next
+			if (top > 0 && stack[top - 1].left == node) {
+				descend(stack[top - 1].right);
+			}
+			return node.data;
+		}
+
+		// pushes the path down to the first node shown in this subtree,
+		// going Left when we can and Right otherwise
+		private void descend(Node<T> node) {
+			while (node != null) {
+				stack = push(stack, top++, node);
+				node = (node.left != null) ? node.left : node.right;
+			}
+		}
+	}
+
+	// In-order spliterator over the elements x of subtree with lo <= x < hi
+	// (a null bound means no bound). Splitting finds the highest node p
+	// strictly inside the bounds and hands back [lo, p) as a new spliterator,
+	// keeping [p, hi), which lives entirely in p's subtree.
+	private class InorderSpliterator implements Spliterator<T> {
+		private Node<T> subtree;
+		private T lo, hi;
+		private long estimate;	// elements left, halved on every split
+		private Node<T>[] stack;	// null until we start walking
+		private int top;
+
+		InorderSpliterator(Node<T> subtree, T lo, T hi, long estimate) {
+			this.subtree = subtree;
+			this.lo = lo;
+			this.hi = hi;
+			this.estimate = estimate;
+		}
+
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (stack == null) {
+				start();
+			}
+			if (top == 0) {
+				return false;
+			}
+			Node<T> node = stack[--top];
+			stack[top] = null;
+			pushLeft(node.right);
+			action.accept(node.data);
+			return true;
+		}
+
+		public void forEachRemaining(Consumer<? super T> action) {
+			while (tryAdvance(action)) {
+			}
+		}
+
+		public Spliterator<T> trySplit() {
+			if (stack != null) {
+				return null;	// already walking
+			}
+			Node<T> node = subtree;
+			while (node != null) {
+				if (lo != null && node.data.compareTo(lo) <= 0) {
+					node = node.right;
+				} else if (hi != null && node.data.compareTo(hi) >= 0) {
+					node = node.left;
+				} else {
+					break;
+				}
+			}
+			if (node == null) {
+				return null;	// at most one element left
+			}
+			long half = estimate / 2;
+			InorderSpliterator prefix = new InorderSpliterator(subtree, lo, node.data, half);
+			subtree = node;
+			lo = node.data;
+			estimate -= half;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			return estimate;
+		}
+
+		public int characteristics() {
+			return ORDERED | SORTED | DISTINCT | NONNULL;
+		}
+
+		// sorted by the elements' natural order
+		public Comparator<? super T> getComparator() {
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void start() {
+			stack = (Node<T>[]) new Node<?>[32];
+			pushLeft(subtree);
+		}
+
+		// pushes the in-bounds nodes down the left edge of node's subtree,
+		// skipping over nodes outside the bounds
+		private void pushLeft(Node<T> node) {
+			while (node != null) {
+				if (lo != null && node.data.compareTo(lo) < 0) {
+					node = node.right;
+				} else if (hi != null && node.data.compareTo(hi) >= 0) {
+					node = node.left;
+				} else {
+					stack = push(stack, top++, node);
+					node = node.left;
+				}
+			}
+		}
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,181 @@
+// Filename: Graph.java
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Compact adjacency-list (CSR) representation of a directed graph. The
+// targets of vertex v are stored in targets[offsets[v] .. offsets[v + 1] - 1]
+// and incoming[v] counts the edges pointing at v. Vertices are 0-based here,
+// the graph files and the public Topo* API use 1-based vertex numbers.
+// Memory: O(|V| + |E|) instead of O(|V|^2) for the adjacency matrix
+class Graph {
+
+	// graphs with at most this many vertices and a dense edge set still go
+	// through the original adjacency matrix code in TopoPath.hasTopoPath.
+	// TopoSort always works on the lists: its ReachIndex search walks the
+	// edges it needs, which for a dense graph is no more work than scanning
+	// matrix rows.
+	static final int DENSE_MAX_SIZE = 2048;
+
+	final int size;         // number of vertices
+	final int[] offsets;    // size + 1 entries, start of each vertex's targets
+	final int[] targets;    // 0-based target of every edge
+	final int[] incoming;   // number of edges pointing at each vertex
+
+	// Assume: offsets has size + 1 entries and targets holds offsets[size]
+	// valid 0-based vertex numbers
+	// Runtime: O(|V| + |E|)
+	Graph(int size, int[] offsets, int[] targets) {
+		this.size = size;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.incoming = new int[size];
+		for (int e = 0; e < offsets[size]; e++)
+			incoming[targets[e]]++;
+	}
+
+	// Reads the "size / numNeighbors / targets" graph format into a graph
+	// in a single pass, parsing the integers straight out of the file's bytes.
+	// A negative count, a target outside 1 .. size or a number too big for
+	// an int, or one run into something other than whitespace, is an
+	// IOException giving the byte it starts at.
+	// Assume: the file we are reading from exists
+	// Runtime: O(|V| + |E|)
+	static Graph read(String filename) throws IOException {
+		try (IntReader in = new IntReader(filename)) {
+			int size = in.nextInt(0, Integer.MAX_VALUE - 1, "size");
+			int[] offsets = new int[size + 1];
+			int[] targets = new int[Math.max(16, Math.min(size, 1 << 20))];
+			int edges = 0;
+			for (int i = 0; i < size; i++) {
+				int numNeighbors = in.nextInt(0, Integer.MAX_VALUE - edges, "numNeighbors");
+				for (int j = 0; j < numNeighbors; j++) {
+					// grow as the edges actually turn up, so a bogus count
+					// hits the end of the file rather than a huge allocation
+					if (edges == targets.length)
+						targets = Arrays.copyOf(targets, (int) Math.min((long) targets.length * 2, Integer.MAX_VALUE - 8));
+					// location represents nodes current node points to
+					targets[edges++] = in.nextInt(1, size, "target") - 1;
+				}
+				offsets[i + 1] = edges;
+			}
+			return new Graph(size, offsets, targets);
+		}
+	}
+
+	// Returns the number of edges stored in the graph
+	int edgeCount() {
+		return offsets[size];
+	}
+
+	// True when the adjacency matrix is the better representation: small
+	// enough to allocate and with at least a quarter of the possible edges
+	boolean isDense() {
+		return size <= DENSE_MAX_SIZE && (long) edgeCount() * 4 >= (long) size * size;
+	}
+
+	// Builds the adjacency matrix used by the original O(n^2) TopoPath check
+	// Runtime: O(|V|^2)
+	boolean[][] toMatrix() {
+		boolean[][] matrix = new boolean[size][size];
+		for (int i = 0; i < size; i++)
+			for (int e = offsets[i]; e < offsets[i + 1]; e++)
+				matrix[i][targets[e]] = true;
+		return matrix;
+	}
+}
+
+
+// Reads whitespace separated integers from a file through a reusable direct
+// buffer, so parsing a token costs no regex matching and no objects, unlike
+// java.util.Scanner.
+class IntReader implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private long position;   // offset in the file of the next byte read
+	private long start;      // offset of the first byte of the last number
+
+	// Assume: the file we are reading from exists
+	IntReader(String filename) throws IOException {
+		channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		buffer.limit(0);
+	}
+
+	// Returns the next byte of the file, or -1 once we are out of bytes
+	private int read() throws IOException {
+		if (!buffer.hasRemaining()) {
+			buffer.clear();
+			int n;
+			do {
+				n = channel.read(buffer);
+			} while (n == 0);
+			buffer.flip();
+			if (n < 0)
+				return -1;
+		}
+		position++;
+		return buffer.get() & 0xFF;
+	}
+
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+	}
+
+	// Skips any whitespace and parses the next (optionally signed) integer
+	// Throws EOFException when the file ends before the next number, and
+	// IOException when it isn't a number or doesn't fit in an int
+	int nextInt() throws IOException {
+		int c = read();
+		while (isSpace(c))
+			c = read();
+		start = position - 1;
+		if (c < 0)
+			throw new EOFException("expected an integer at byte " + position);
+
+		boolean negative = (c == '-');
+		if (negative)
+			c = read();
+		if (c < '0' || '9' < c)
+			throw new IOException("expected an integer at byte " + start + ", found "
+					+ ((c < 0) ? "end of file" : "'" + (char) c + "'"));
+
+		// accumulate as a negative number so Integer.MIN_VALUE also fits
+		int val = 0;
+		while ('0' <= c && c <= '9') {
+			int digit = c - '0';
+			if (val < Integer.MIN_VALUE / 10 || val * 10 < Integer.MIN_VALUE + digit)
+				throw new IOException("integer at byte " + start + " doesn't fit in an int");
+			val = val * 10 - digit;
+			c = read();
+		}
+		// the number has to end at whitespace or the end of the file, so
+		// "2x" or "2,0" isn't taken for 2 (or 2 and 0)
+		if (c >= 0 && !isSpace(c))
+			throw new IOException("integer at byte " + start + " is followed by '" + (char) c
+					+ "' at byte " + (position - 1));
+		if (!negative && val == Integer.MIN_VALUE)
+			throw new IOException("integer at byte " + start + " doesn't fit in an int");
+		return negative ? val : -val;
+	}
+
+	// Like nextInt, but also throws IOException naming what the number is
+	// when it falls outside min .. max
+	int nextInt(int min, int max, String what) throws IOException {
+		int val = nextInt();
+		if (val < min || val > max)
+			throw new IOException(what + " " + val + " at byte " + start + " is outside " + min + " .. " + max);
+		return val;
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,200 @@
+// Filename: IntTreap.java
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Treap of int keys without boxing or node objects. Node i is made of
+// keys[i], priority[i], left[i] and right[i] (16 bytes per key), children
+// are node indexes with NIL for no child. Removed nodes go on a free list
+// chained through left[] and are reused by later adds, so a treap that
+// churns at a steady size doesn't allocate anything.
+public class IntTreap {
+
+	static final int NIL = -1;
+
+	int[] keys;      // key stored in each node
+	int[] priority;  // priority to keep in heap
+	int[] left;      // left child of each node, next free node when free
+	int[] right;     // right child of each node
+	int root = NIL;  // our Treap root node
+	int count;       // count of number nodes
+	int used;        // nodes 0 .. used - 1 have been handed out at some point
+	int free = NIL;  // first node on the free list
+
+	private int[] path = new int[32]; // explicit stack of nodes above us
+
+	public IntTreap() {
+		this(16);
+	}
+
+	// Makes room for capacity keys up front
+	public IntTreap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		keys = new int[capacity];
+		priority = new int[capacity];
+		left = new int[capacity];
+		right = new int[capacity];
+	}
+
+	// Adds key with a random priority, returns false if it was already there
+	// Runtime: O(log(n))
+	public boolean add(int key) {
+		return add(key, ThreadLocalRandom.current().nextInt());
+	}
+
+	// Adds key with a priority chosen by the caller, returns false if it was
+	// already there. Walks down remembering the path, then rotates the new
+	// node up while its parent has a greater priority.
+	// Runtime: O(log(n))
+	public boolean add(int key, int prio) {
+		int depth = 0;
+		int node = root;
+		while (node != NIL) {
+			if (key == keys[node]) {
+				return false;	// already in treap
+			}
+			path = push(path, depth++, node);
+			node = (key < keys[node]) ? left[node] : right[node];
+		}
+
+		int child = allocate(key, prio);
+		count++;
+		if (depth == 0) {
+			root = child;
+			return true;
+		}
+		int parent = path[depth - 1];
+		if (key < keys[parent]) {
+			left[parent] = child;
+		} else {
+			right[parent] = child;
+		}
+
+		while (depth > 0) {
+			parent = path[--depth];
+			if (priority[parent] <= priority[child]) {
+				break;
+			}
+			if (left[parent] == child) {
+				rotateRight(parent, child);
+			} else {
+				rotateLeft(parent, child);
+			}
+			relink(depth, parent, child);
+		}
+		return true;
+	}
+
+	// Removes key, returns false if it wasn't there. Rotates the node down
+	// with its lesser priority child until it's a leaf, then cuts it off.
+	// Runtime: O(log(n))
+	public boolean remove(int key) {
+		int depth = 0;
+		int node = root;
+		while (node != NIL && key != keys[node]) {
+			path = push(path, depth++, node);
+			node = (key < keys[node]) ? left[node] : right[node];
+		}
+		if (node == NIL) {
+			return false;	// never found a match
+		}
+
+		while (left[node] != NIL || right[node] != NIL) {
+			int child;
+			if (right[node] == NIL || (left[node] != NIL && priority[left[node]] < priority[right[node]])) {
+				child = left[node];
+				rotateRight(node, child);
+			} else {
+				child = right[node];
+				rotateLeft(node, child);
+			}
+			relink(depth, node, child);
+			path = push(path, depth++, child);
+		}
+
+		relink(depth, node, NIL);
+		release(node);
+		count--;
+		return true;
+	}
+
+	// Searches BST style for key
+	// Runtime: O(log(n))
+	public boolean contains(int key) {
+		int node = root;
+		while (node != NIL) {
+			if (key == keys[node]) {
+				return true;
+			}
+			node = (key < keys[node]) ? left[node] : right[node];
+		}
+		return false;
+	}
+
+	// Returns the number of keys in the treap
+	public int size() {
+		return count;
+	}
+
+	// Making the parent node the left-child of child
+	private void rotateLeft(int parent, int child) {
+		right[parent] = left[child];
+		left[child] = parent;
+	}
+
+	// Making the parent node the right-child of child
+	private void rotateRight(int parent, int child) {
+		left[parent] = right[child];
+		right[child] = parent;
+	}
+
+	// Replaces oldChild with newChild under path[depth - 1], or as the root
+	// when depth is 0
+	private void relink(int depth, int oldChild, int newChild) {
+		if (depth == 0) {
+			root = newChild;
+		} else if (left[path[depth - 1]] == oldChild) {
+			left[path[depth - 1]] = newChild;
+		} else {
+			right[path[depth - 1]] = newChild;
+		}
+	}
+
+	// Takes a node off the free list, or the next unused one, growing the
+	// arrays if every node is taken
+	private int allocate(int key, int prio) {
+		int node;
+		if (free != NIL) {
+			node = free;
+			free = left[node];
+		} else {
+			if (used == keys.length) {
+				int capacity = keys.length * 2;
+				keys = Arrays.copyOf(keys, capacity);
+				priority = Arrays.copyOf(priority, capacity);
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+			}
+			node = used++;
+		}
+		keys[node] = key;
+		priority[node] = prio;
+		left[node] = right[node] = NIL;
+		return node;
+	}
+
+	// Puts a node on the free list
+	private void release(int node) {
+		left[node] = free;
+		free = node;
+	}
+
+	// Stores node at stack[index], doubling the stack first if it's full
+	private static int[] push(int[] stack, int index, int node) {
+		if (index == stack.length) {
+			stack = Arrays.copyOf(stack, stack.length * 2);
+		}
+		stack[index] = node;
+		return stack;
+	}
+}
@@ -0,0 +1,128 @@
+// Filename: LevelKahn.java
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Level-synchronous version of Kahn's algorithm. All vertices that become
+// ready at the same time form a level, levels are processed one after the
+// other and each level is sorted by vertex id, so the resulting order is the
+// same whether or not the level was processed in parallel.
+class LevelKahn {
+
+	// levels with fewer vertices than this are processed on the calling thread
+	static final int PARALLEL_THRESHOLD = 4096;
+
+	// Fills order with the vertices in topological order and level with the
+	// level of every vertex. Returns the number of vertices placed in order,
+	// which is less than graph.size if the graph has a cycle.
+	// Assume: order and level have graph.size entries
+	// Runtime: O(|V| log |V| + |E|) work, the log only comes from sorting levels
+	static int sort(Graph graph, int[] order, int[] level) {
+		if (graph.size < PARALLEL_THRESHOLD)
+			return sortSequential(graph, order, level);
+		return sortParallel(graph, order, level, ForkJoinPool.commonPool());
+	}
+
+	// ************************************************************************
+	// * BASED OFF OF SZUMLANSKI'S KAHN'S ALGORITHM FROM TOPOSORT.JAVA       *
+	// ************************************************************************
+	static int sortSequential(Graph graph, int[] order, int[] level) {
+		// Any vertex with zero incoming edges is ready to be visited.
+		int[] incoming = graph.incoming.clone();
+		int cnt = 0;
+		for (int i = 0; i < graph.size; i++)
+			if (incoming[i] == 0)
+				order[cnt++] = i;
+
+		int start = 0;
+		for (int depth = 0; start < cnt; depth++) {
+			int end = cnt;
+			for (int i = start; i < end; i++) {
+				int node = order[i];
+				level[node] = depth;
+				// decrement the incoming count of every vertex we point to, the
+				// ones that hit zero make up the next level
+				for (int e = graph.offsets[node]; e < graph.offsets[node + 1]; e++)
+					if (--incoming[graph.targets[e]] == 0)
+						order[cnt++] = graph.targets[e];
+			}
+			Arrays.sort(order, end, cnt);
+			start = end;
+		}
+		return cnt;
+	}
+
+	// Same as sortSequential, but each level is split across the pool and
+	// the incoming counts are decremented atomically. A vertex is appended to
+	// the next level by the one thread that takes its count to zero.
+	static int sortParallel(Graph graph, int[] order, int[] level, ForkJoinPool pool) {
+		AtomicIntegerArray incoming = new AtomicIntegerArray(graph.incoming);
+		AtomicInteger cnt = new AtomicInteger();
+		for (int i = 0; i < graph.size; i++)
+			if (graph.incoming[i] == 0)
+				order[cnt.getAndIncrement()] = i;
+
+		int start = 0;
+		for (int depth = 0; start < cnt.get(); depth++) {
+			int end = cnt.get();
+			LevelTask task = new LevelTask(graph, incoming, order, level, cnt, depth, start, end);
+			if (end - start < PARALLEL_THRESHOLD)
+				task.compute();
+			else
+				pool.invoke(task);
+
+			if (cnt.get() - end < PARALLEL_THRESHOLD)
+				Arrays.sort(order, end, cnt.get());
+			else
+				Arrays.parallelSort(order, end, cnt.get());
+			start = end;
+		}
+		return cnt.get();
+	}
+
+	// Processes the vertices order[from .. to - 1] of one level, splitting
+	// the range in half until it is small enough to do directly
+	private static class LevelTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		// vertices handled by one task without splitting further
+		static final int CHUNK = 1024;
+
+		final Graph graph;
+		final AtomicIntegerArray incoming;
+		final int[] order, level;
+		final AtomicInteger cnt;
+		final int depth, from, to;
+
+		LevelTask(Graph graph, AtomicIntegerArray incoming, int[] order, int[] level,
+				AtomicInteger cnt, int depth, int from, int to) {
+			this.graph = graph;
+			this.incoming = incoming;
+			this.order = order;
+			this.level = level;
+			this.cnt = cnt;
+			this.depth = depth;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from > CHUNK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new LevelTask(graph, incoming, order, level, cnt, depth, from, mid),
+						new LevelTask(graph, incoming, order, level, cnt, depth, mid, to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				int node = order[i];
+				level[node] = depth;
+				for (int e = graph.offsets[node]; e < graph.offsets[node + 1]; e++)
+					if (incoming.decrementAndGet(graph.targets[e]) == 0)
+						order[cnt.getAndIncrement()] = graph.targets[e];
+			}
+		}
+	}
+}
@@ -0,0 +1,273 @@
+// Filename: LongBST.java
+
+import java.util.Arrays;
+
+// Binary search tree of long keys without boxing or node objects, the
+// primitive counterpart of GenericBST. Node i is made of keys[i], left[i],
+// right[i] and height[i] (17 bytes per key), children are node indexes with
+// NIL for no child. Like GenericBST it is a plain BST by default, or kept
+// AVL balanced when asked, which is what sorted keys such as timestamps
+// or sequence numbers need to stay O(log(n)). Deleted nodes go on a free
+// list chained through left[] and are reused by later inserts. Everything
+// is iterative, so even a degenerate plain tree never overflows the call
+// stack.
+public class LongBST {
+
+	static final int NIL = -1;
+
+	long[] keys;     // key stored in each node
+	int[] left;      // left child of each node, next free node when free
+	int[] right;     // right child of each node
+	byte[] height;   // height of each node's subtree, a leaf is 0
+	int root = NIL;  // root of the tree
+	int count;       // number of keys in the tree
+	int used;        // nodes 0 .. used - 1 have been handed out at some point
+	int free = NIL;  // first node on the free list
+	private final boolean balanced;  // keep the tree AVL balanced after every change
+	private long rotations;          // number of rotations done to keep the tree balanced
+
+	private int[] path = new int[32]; // explicit stack of nodes above us
+
+	public LongBST() {
+		this(16, false);
+	}
+
+	// Makes room for capacity keys up front
+	public LongBST(int capacity) {
+		this(capacity, false);
+	}
+
+	// if balanced the tree is kept AVL balanced (the heights of every node's
+	// subtrees differ by at most one), so insert, delete and contains are
+	// O(log(n)) whatever order the keys come in
+	public LongBST(boolean balanced) {
+		this(16, balanced);
+	}
+
+	public LongBST(int capacity, boolean balanced) {
+		capacity = Math.max(capacity, 1);
+		keys = new long[capacity];
+		left = new int[capacity];
+		right = new int[capacity];
+		height = new byte[capacity];
+		this.balanced = balanced;
+	}
+
+	// Walks down to the empty child where key belongs, remembering the path,
+	// hangs a new node there and then fixes up the heights on the path.
+	// Returns false if key was already in the tree.
+	public boolean insert(long key) {
+		if (root == NIL) {
+			root = allocate(key);
+			count++;
+			return true;
+		}
+
+		int depth = 0;
+		int node = root;
+		while (true) {
+			if (key == keys[node]) {
+				return false;	// already in tree
+			}
+			path = push(path, depth++, node);
+			if (key < keys[node]) {
+				if (left[node] == NIL) {
+					int child = allocate(key);
+					left[node] = child;
+					break;
+				}
+				node = left[node];
+			} else {
+				if (right[node] == NIL) {
+					int child = allocate(key);
+					right[node] = child;
+					break;
+				}
+				node = right[node];
+			}
+		}
+		count++;
+		retrace(depth);
+		return true;
+	}
+
+	// Deletes key from the tree, returns false if it wasn't there. A node
+	// with two children takes the largest key under its left child, and that
+	// node is deleted instead.
+	public boolean delete(long key) {
+		int depth = 0;
+		int node = root;
+		while (node != NIL && key != keys[node]) {
+			path = push(path, depth++, node);
+			node = (key < keys[node]) ? left[node] : right[node];
+		}
+		if (node == NIL) {
+			return false;	// never found it, nothing to delete
+		}
+
+		if (left[node] != NIL && right[node] != NIL) {
+			path = push(path, depth++, node);
+			int max = left[node];
+			while (right[max] != NIL) {	// go to the most right node until hit NIL child
+				path = push(path, depth++, max);
+				max = right[max];
+			}
+			keys[node] = keys[max];
+			node = max;
+		}
+
+		// zero or one child, replace the node with whichever child it has
+		relink(depth, node, (left[node] != NIL) ? left[node] : right[node]);
+		release(node);
+		count--;
+		retrace(depth);
+		return true;
+	}
+
+	// Returns true if key is found in the tree, false otherwise
+	public boolean contains(long key) {
+		int node = root;
+		while (node != NIL) {
+			if (key == keys[node]) {
+				return true;
+			}
+			node = (key < keys[node]) ? left[node] : right[node];
+		}
+		return false;
+	}
+
+	// Returns the number of keys in the tree
+	public int size() {
+		return count;
+	}
+
+	// Returns the height of the tree, -1 if it's empty, topping out at
+	// Byte.MAX_VALUE for a plain tree
+	// Runtime: O(1), every node keeps the height of its subtree
+	public int height() {
+		return heightOf(root);
+	}
+
+	// Returns the number of rotations done so far to keep the tree balanced
+	public long rotations() {
+		return rotations;
+	}
+
+	// Goes back up the first depth nodes of the path after a change below
+	// them, updating each height and rebalancing if we are balanced, stops
+	// early once a subtree's height comes out the same as before
+	private void retrace(int depth) {
+		while (depth > 0) {
+			int node = path[--depth];
+			int oldHeight = height[node];
+			update(node);
+			int top = balanced ? rebalance(node) : node;
+			if (top != node) {
+				relink(depth, node, top);
+			}
+			if (height[top] == oldHeight) {
+				break;
+			}
+		}
+	}
+
+	// Rotates the node's subtree back into AVL balance if its children's
+	// heights differ by two, returns the node now at the top of the subtree
+	private int rebalance(int node) {
+		int balance = heightOf(left[node]) - heightOf(right[node]);
+		if (balance > 1) {	// left side too tall
+			if (heightOf(left[left[node]]) < heightOf(right[left[node]])) {
+				left[node] = rotateLeft(left[node]);
+			}
+			return rotateRight(node);
+		} else if (balance < -1) {	// right side too tall
+			if (heightOf(right[right[node]]) < heightOf(left[right[node]])) {
+				right[node] = rotateRight(right[node]);
+			}
+			return rotateLeft(node);
+		}
+		return node;
+	}
+
+	// Makes node the left child of its right child, returns the right child
+	private int rotateLeft(int node) {
+		int child = right[node];
+		right[node] = left[child];
+		left[child] = node;
+		update(node);
+		update(child);
+		rotations++;
+		return child;
+	}
+
+	// Makes node the right child of its left child, returns the left child
+	private int rotateRight(int node) {
+		int child = left[node];
+		left[node] = right[child];
+		right[child] = node;
+		update(node);
+		update(child);
+		rotations++;
+		return child;
+	}
+
+	// Replaces oldChild with newChild under path[depth - 1], or as the root
+	// when depth is 0
+	private void relink(int depth, int oldChild, int newChild) {
+		if (depth == 0) {
+			root = newChild;
+		} else if (left[path[depth - 1]] == oldChild) {
+			left[path[depth - 1]] = newChild;
+		} else {
+			right[path[depth - 1]] = newChild;
+		}
+	}
+
+	// Recomputes the node's height from its children's. A plain tree can be
+	// deeper than a byte holds, so its heights stop counting at Byte.MAX_VALUE.
+	private void update(int node) {
+		height[node] = (byte) Math.min(Math.max(heightOf(left[node]), heightOf(right[node])) + 1, Byte.MAX_VALUE);
+	}
+
+	private int heightOf(int node) {
+		return (node == NIL) ? -1 : height[node];
+	}
+
+	// Takes a node off the free list, or the next unused one, growing the
+	// arrays if every node is taken
+	private int allocate(long key) {
+		int node;
+		if (free != NIL) {
+			node = free;
+			free = left[node];
+		} else {
+			if (used == keys.length) {
+				int capacity = keys.length * 2;
+				keys = Arrays.copyOf(keys, capacity);
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+				height = Arrays.copyOf(height, capacity);
+			}
+			node = used++;
+		}
+		keys[node] = key;
+		left[node] = right[node] = NIL;
+		height[node] = 0;
+		return node;
+	}
+
+	// Puts a node on the free list
+	private void release(int node) {
+		left[node] = free;
+		free = node;
+	}
+
+	// Stores node at stack[index], doubling the stack first if it's full
+	private static int[] push(int[] stack, int index, int node) {
+		if (index == stack.length) {
+			stack = Arrays.copyOf(stack, stack.length * 2);
+		}
+		stack[index] = node;
+		return stack;
+	}
+}
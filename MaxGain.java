@@ -0,0 +1,99 @@
+// Filename: MaxGain.java
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+// Streaming form of RunLikeHell.maxGain: blocks are fed in one at a time and
+// nothing is stored but the few DP values the next block needs, so the
+// blocks can come from a stream of any length and the caller's data is
+// never touched. For block i the best gain ending on it is
+//     dp[i] = block[i] + max(0, max(dp[0] .. dp[i - 2]))
+// (dp[0] and dp[1] are just the blocks), and the answer is the greatest dp
+// seen. Sums are longs and throw ArithmeticException rather than overflow.
+public class MaxGain implements IntConsumer, LongConsumer {
+
+	private long count;      // blocks seen so far
+	private long prev;       // dp of the last block
+	private long bestBefore; // max dp of every block but the last, valid once count >= 2
+	private long max;        // max dp so far, valid once count >= 1
+
+	// Adds the next block
+	// Runtime: O(1)
+	public void accept(long block) {
+		long dp = (count < 2) ? block : Math.addExact(block, Math.max(0, bestBefore));
+		// the block we just passed can be landed on from the one after next
+		if (count == 1) {
+			bestBefore = prev;
+		} else if (count > 1) {
+			bestBefore = Math.max(bestBefore, prev);
+		}
+		max = (count == 0) ? dp : Math.max(max, dp);
+		prev = dp;
+		count++;
+	}
+
+	public void accept(int block) {
+		accept((long) block);
+	}
+
+	// Returns the best gain over the blocks seen so far, 0 if none, like
+	// RunLikeHell.maxGain
+	public long currentMax() {
+		return (count == 0) ? 0 : max;
+	}
+
+	// Returns the number of blocks seen so far
+	public long count() {
+		return count;
+	}
+
+	// Feeds every block of the stream in order
+	public MaxGain acceptAll(IntStream blocks) {
+		blocks.sequential().forEachOrdered(this);
+		return this;
+	}
+
+	public MaxGain acceptAll(LongStream blocks) {
+		blocks.sequential().forEachOrdered(this);
+		return this;
+	}
+
+	// Feeds the blocks stored in filename as big-endian 32-bit ints, mapping
+	// the file a chunk at a time instead of reading it onto the heap
+	// Runtime: O(n)
+	public MaxGain acceptFile(String filename) throws IOException {
+		// a whole number of ints, so no block straddles two chunks
+		final long chunkSize = 1L << 30;
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size % Integer.BYTES != 0) {
+				throw new IOException(filename + " isn't a whole number of ints, it has " + size + " bytes");
+			}
+			for (long position = 0; position < size; position += chunkSize) {
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(chunkSize, size - position));
+				while (chunk.hasRemaining()) {
+					accept(chunk.getInt());
+				}
+			}
+		}
+		return this;
+	}
+
+	// Returns the best gain of the blocks in the stream without storing them
+	public static long maxGain(IntStream blocks) {
+		return new MaxGain().acceptAll(blocks).currentMax();
+	}
+
+	// Returns the best gain of the blocks stored in filename, see acceptFile
+	public static long maxGain(String filename) throws IOException {
+		return new MaxGain().acceptFile(filename).currentMax();
+	}
+}
@@ -5,6 +5,7 @@
  * NID: lu469191
  */
 import java.util.ArrayDeque;
+import java.util.PriorityQueue;
 import java.util.Queue;
 
 // wrapper class to keep hold of row, column, and value at cell
@@ -21,49 +22,230 @@ class Point {
 }
 
 public class Maze {
-	// associated array to keep track of moves to get there
-	static int[][] assocMaze; 
+	// Each call to solve gets its own assocMaze, the associated array to keep
+	// track of moves to get there, so Maze has no shared state and any number
+	// of threads can solve different mazes at once.
 	// 2D array to store possible moves can make
 	final static int[][] MOVE_SET = { { 0, 1 }, { 0, -1 }, { 1, 0 }, { -1, 0 } };
 
+	// ways solve can search the maze, all of them find a shortest path
+	final static int FULL_BFS = 0;          // flood the whole maze from the start
+	final static int EARLY_EXIT_BFS = 1;    // stop flooding once we reach the end
+	final static int BIDIRECTIONAL_BFS = 2; // flood from both ends until they meet
+	final static int A_STAR = 3;            // expand cells closest to the end first
+	final static int FLAT_BFS = 4;          // early exit BFS on flat int arrays, see MazeSolver
+
 	// implement a BFS to find the shortest path from
 	// start to end. expect we don't have a null array
 	public static void solve(char[][] maze) throws Exception {
+		solve(maze, FULL_BFS);
+	}
+
+	// find the shortest path from start to end with the given strategy and
+	// mark it on the maze. Returns the number of cells expanded (taken off
+	// the queue to look at their neighbors) to find it.
+	// expect we don't have a null array and the end can be reached
+	public static int solve(char[][] maze, int strategy) throws Exception {
 		// if maze has either 1 row or 1 column, then our start is the end so return maze
 		if (3 < maze.length || 3 < maze[0].length) {
-			
-			assocMaze = new int[maze.length][maze[0].length];
-			// going to be used to implement BFS traversal of maze
-			Queue<Point> queue = new ArrayDeque<Point>();
-			// add starting point of maze
-			queue.add(new Point(1, 1, 1));
-			
-			// continue until find end of maze
-			while (!queue.isEmpty()) {
-				// get the next node
+			if (strategy == FLAT_BFS) {
+				// uses this thread's solver buffers instead of an assocMaze
+				return MazeSolver.forThread().solve(maze);
+			}
+			int[][] assocMaze = new int[maze.length][maze[0].length];
+			int expanded;
+			switch (strategy) {
+			case FULL_BFS:
+				expanded = bfs(maze, assocMaze, false);
+				break;
+			case EARLY_EXIT_BFS:
+				expanded = bfs(maze, assocMaze, true);
+				break;
+			case BIDIRECTIONAL_BFS:
+				// marks the path itself, from wherever the two searches met
+				return bidirectionalBfs(maze, assocMaze);
+			case A_STAR:
+				expanded = aStar(maze, assocMaze);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown strategy " + strategy);
+			}
+			maze = makeMaze(maze, assocMaze);
+			return expanded;
+		}
+		return 0;
+	}
+
+	// find the shortest path from start to end without writing to the maze,
+	// or null if there isn't one. Safe to call from several threads at once,
+	// each uses its own MazeSolver. MazePath.render draws it like solve does.
+	public static MazePath findPath(char[][] maze) {
+		return MazeSolver.forThread().findPath(maze);
+	}
+
+	// BFS from the start filling in assocMaze, if earlyExit we stop as soon
+	// as the end has its distance since that can't get any shorter
+	private static int bfs(char[][] maze, int[][] assocMaze, boolean earlyExit) {
+		int endRow = maze.length - 2;
+		int endCol = maze[0].length - 2;
+		int expanded = 0;
+		// going to be used to implement BFS traversal of maze
+		Queue<Point> queue = new ArrayDeque<Point>();
+		// add starting point of maze
+		queue.add(new Point(1, 1, 1));
+		
+		// continue until find end of maze
+		while (!queue.isEmpty()) {
+			// get the next node
+			Point p = queue.remove();
+			expanded++;
+			// search through the possible moves we can make
+			for (int i = 0; i < MOVE_SET.length; i++) {
+				// get the neighboring cell
+				int nextRow = p.row + MOVE_SET[i][0];
+				int nextCol = p.col + MOVE_SET[i][1];
+				// skip over if back at beginning of maze
+				if (nextRow == 1 && nextCol == 1) continue;
+				// mark the move if not a wall and haven't been there yet
+				if (maze[nextRow][nextCol] != '#' && assocMaze[nextRow][nextCol] == 0) {
+					// mark the distance to get there	
+					assocMaze[nextRow][nextCol] = p.val + 1;
+					if (earlyExit && nextRow == endRow && nextCol == endCol) {
+						return expanded;
+					}
+					// add to queue to look at its kids
+					queue.add(new Point(nextRow, nextCol, p.val + 1));
+				}
+			}
+		}
+		return expanded;
+	}
+
+	// BFS from the start (into assocMaze) and from the end (into assocMazeEnd)
+	// one whole level at a time, always growing the smaller frontier. Once a
+	// level touches the other side, the best meeting in that level is a
+	// shortest path, and we mark it by walking both distance grids back.
+	private static int bidirectionalBfs(char[][] maze, int[][] assocMaze) {
+		int endRow = maze.length - 2;
+		int endCol = maze[0].length - 2;
+		// same as assocMaze but counting moves back from the end
+		int[][] assocMazeEnd = new int[maze.length][maze[0].length];
+		assocMaze[1][1] = 1;
+		assocMazeEnd[endRow][endCol] = 1;
+		Queue<Point> front = new ArrayDeque<Point>();
+		Queue<Point> back = new ArrayDeque<Point>();
+		front.add(new Point(1, 1, 1));
+		back.add(new Point(endRow, endCol, 1));
+
+		int expanded = 0;
+		int best = Integer.MAX_VALUE;
+		// the meeting cells: near is reached from the side we grew, far from the other
+		int nearRow = 0, nearCol = 0, farRow = 0, farCol = 0;
+		boolean fromStart = true;
+
+		while (best == Integer.MAX_VALUE && !front.isEmpty() && !back.isEmpty()) {
+			fromStart = front.size() <= back.size();
+			Queue<Point> queue = fromStart ? front : back;
+			int[][] mine = fromStart ? assocMaze : assocMazeEnd;
+			int[][] other = fromStart ? assocMazeEnd : assocMaze;
+
+			// grow this side by exactly one level
+			for (int levelSize = queue.size(); levelSize > 0; levelSize--) {
 				Point p = queue.remove();
-				// search through the possible moves we can make
+				expanded++;
 				for (int i = 0; i < MOVE_SET.length; i++) {
-					// get the neighboring cell
 					int nextRow = p.row + MOVE_SET[i][0];
 					int nextCol = p.col + MOVE_SET[i][1];
-					// skip over if back at beginning of maze
-					if (nextRow == 1 && nextCol == 1) continue;
-					// mark the move if not a wall and haven't been there yet
-					if (maze[nextRow][nextCol] != '#' && assocMaze[nextRow][nextCol] == 0) {
-						// mark the distance to get there	
-						assocMaze[nextRow][nextCol] = p.val + 1;
-						// add to queue to look at its kids
+					if (maze[nextRow][nextCol] == '#') continue;
+					// touched the other side, remember the shortest meeting
+					if (other[nextRow][nextCol] != 0 && p.val + other[nextRow][nextCol] < best) {
+						best = p.val + other[nextRow][nextCol];
+						nearRow = p.row;
+						nearCol = p.col;
+						farRow = nextRow;
+						farCol = nextCol;
+					}
+					if (mine[nextRow][nextCol] == 0) {
+						mine[nextRow][nextCol] = p.val + 1;
 						queue.add(new Point(nextRow, nextCol, p.val + 1));
 					}
 				}
 			}
-			maze = makeMaze(maze);
+		}
+
+		if (best != Integer.MAX_VALUE) {
+			if (fromStart) {
+				markBack(maze, assocMaze, nearRow, nearCol);
+				markBack(maze, assocMazeEnd, farRow, farCol);
+			} else {
+				markBack(maze, assocMazeEnd, nearRow, nearCol);
+				markBack(maze, assocMaze, farRow, farCol);
+			}
+		}
+		return expanded;
+	}
+
+	// A* search from the start with the Manhattan distance to the end as the
+	// estimate of the moves left, it never overestimates so the first time
+	// we take the end off the queue we have a shortest path. Fills in
+	// assocMaze with the distances we found, which makeMaze follows back.
+	private static int aStar(char[][] maze, int[][] assocMaze) {
+		final int endRow = maze.length - 2;
+		final int endCol = maze[0].length - 2;
+		int expanded = 0;
+		// Point.val holds distance so far + estimate, ties go to the cell
+		// closer to the end
+		PriorityQueue<Point> queue = new PriorityQueue<Point>((a, b) -> (a.val != b.val)
+				? Integer.compare(a.val, b.val)
+				: Integer.compare(manhattan(a.row, a.col, endRow, endCol), manhattan(b.row, b.col, endRow, endCol)));
+		assocMaze[1][1] = 1;
+		queue.add(new Point(1, 1, 1 + manhattan(1, 1, endRow, endCol)));
+
+		while (!queue.isEmpty()) {
+			Point p = queue.remove();
+			int dist = assocMaze[p.row][p.col];
+			// skip entries left behind after we found a shorter way there
+			if (p.val != dist + manhattan(p.row, p.col, endRow, endCol)) continue;
+			expanded++;
+			if (p.row == endRow && p.col == endCol) break;
+
+			for (int i = 0; i < MOVE_SET.length; i++) {
+				int nextRow = p.row + MOVE_SET[i][0];
+				int nextCol = p.col + MOVE_SET[i][1];
+				if (maze[nextRow][nextCol] == '#') continue;
+				if (assocMaze[nextRow][nextCol] == 0 || dist + 1 < assocMaze[nextRow][nextCol]) {
+					assocMaze[nextRow][nextCol] = dist + 1;
+					queue.add(new Point(nextRow, nextCol, dist + 1 + manhattan(nextRow, nextCol, endRow, endCol)));
+				}
+			}
+		}
+		return expanded;
+	}
+
+	// number of moves between two cells if there were no walls
+	private static int manhattan(int row, int col, int endRow, int endCol) {
+		return Math.abs(endRow - row) + Math.abs(endCol - col);
+	}
+
+	// marks the cell and every cell on the way back to where dist is 1,
+	// that last cell is the start or end and isn't marked
+	private static void markBack(char[][] maze, int[][] dist, int row, int col) {
+		while (dist[row][col] > 1) {
+			maze[row][col] = '.';
+			for (int i = 0; i < MOVE_SET.length; i++) {
+				int nextRow = row + MOVE_SET[i][0];
+				int nextCol = col + MOVE_SET[i][1];
+				if (maze[nextRow][nextCol] != '#' && dist[nextRow][nextCol] == dist[row][col] - 1) {
+					row = nextRow;
+					col = nextCol;
+					break;
+				}
+			}
 		}
 	}
 
 	// use the assocMaze to mark the shortest path from start to end 
-	private static char[][] makeMaze(char[][] maze) {
+	private static char[][] makeMaze(char[][] maze, int[][] assocMaze) {
 		// flag to mark if we have completed the path
 		boolean isComplete = false;
 		// going to start at end of maze
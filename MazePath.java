@@ -0,0 +1,51 @@
+// Filename: MazePath.java
+
+// A path through a maze as data: the cells from the start to the end, both
+// included, each numbered row * cols + col. 4 bytes a step, and building
+// one never writes to the maze, so threads can share a read-only maze and
+// each get their own path. Drawing it on a maze is a separate step, render.
+public class MazePath {
+
+	final int rows;
+	final int cols;
+	private final int[] cells;
+
+	MazePath(int rows, int cols, int[] cells) {
+		this.rows = rows;
+		this.cols = cols;
+		this.cells = cells;
+	}
+
+	// Returns the number of moves from start to end
+	public int length() {
+		return cells.length - 1;
+	}
+
+	// Returns the cell i moves from the start
+	public int cell(int i) {
+		return cells[i];
+	}
+
+	public int row(int i) {
+		return cells[i] / cols;
+	}
+
+	public int col(int i) {
+		return cells[i] % cols;
+	}
+
+	// Returns a copy of the cells from start to end
+	public int[] cells() {
+		return cells.clone();
+	}
+
+	// Marks the path on maze with '.' leaving both ends alone, which is how
+	// Maze.solve draws it
+	// Assume: maze is the one (or the same size as the one) the path came from
+	public char[][] render(char[][] maze) {
+		for (int i = 1; i < cells.length - 1; i++) {
+			maze[cells[i] / cols][cells[i] % cols] = '.';
+		}
+		return maze;
+	}
+}
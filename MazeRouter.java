@@ -0,0 +1,421 @@
+// Filename: MazeRouter.java
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Scratch space for one A* search in MazeRouter, lent out to one query at
+// a time. A cell's g is only valid when its stamp matches epoch, so
+// starting a new search is bumping epoch instead of clearing arrays as big
+// as the maze.
+class RouterScratch {
+	int[] g;              // moves from the source, valid when stamp[cell] == epoch
+	int[] stamp;
+	int epoch;
+	long[] heap = new long[64];   // binary min-heap of (f << 32) | estimate, so ties go closer to the target
+	int[] heapCells = new int[64];  // cell of each heap entry
+	int heapSize;
+
+	RouterScratch(int cells) {
+		g = new int[cells];
+		stamp = new int[cells];
+	}
+}
+
+// Answers shortest path queries between any two cells of one maze that
+// doesn't change. Every BFS from a source is kept as a tree of distances
+// (4 bytes a cell) in an LRU cache bounded by bytes, so a repeated source
+// is answered straight from its tree. With landmarks on, a source that
+// isn't cached is answered by an A* search guided by the ALT bound
+// |d(L, t) - d(L, n)| from a few precomputed landmark trees, which usually
+// looks at a small part of the maze. Safe to share between threads.
+// Cells are numbered row * cols + col, like MazeSolver.
+// Memory: the budget covers everything that grows with use: cached trees,
+// landmark trees (4 bytes a cell each) and A* scratch (8 bytes a cell for
+// each query running at once). Landmarks and scratch are always granted,
+// cached trees are evicted to make room for them, so the budget only
+// holds while it's bigger than those. The copy of the walls (1 byte a
+// cell) comes on top.
+public class MazeRouter {
+
+	static final int UNREACHED = -1;
+	// rough cost of a cache entry besides its tree
+	static final long ENTRY_OVERHEAD = 64;
+
+	final int rows;
+	final int cols;
+	private final boolean[] wall;
+	private final int[] offsets;
+	private final long maxBytes;
+	// everything below is guarded by the cache's lock
+	private long cacheBytes;   // bytes of the cached trees
+	private long fixedBytes;   // bytes of the landmark trees and every scratch lent out or idle
+	// source cell -> distances from it, in access order so the eldest is least recently used
+	private final LinkedHashMap<Integer, int[]> cache = new LinkedHashMap<Integer, int[]>(16, 0.75f, true);
+	// scratch not lent out right now, owned by this router so it goes when the router does
+	private final ArrayDeque<RouterScratch> idleScratch = new ArrayDeque<RouterScratch>();
+	private volatile int[][] landmarks = new int[0][];
+
+	// Copies the walls of maze, so the caller can go on using it, and keeps
+	// the trees, landmarks and scratch it builds within maxBytes as far as it
+	// can (see above)
+	// Assume: maze is rectangular and walled all the way round
+	public MazeRouter(char[][] maze, long maxBytes) {
+		rows = maze.length;
+		cols = maze[0].length;
+		if ((long) rows * cols > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("maze has too many cells to number with an int");
+		}
+		wall = new boolean[rows * cols];
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < cols; col++) {
+				wall[row * cols + col] = maze[row][col] == '#';
+			}
+		}
+		offsets = new int[] { 1, -1, cols, -cols };
+		this.maxBytes = maxBytes;
+	}
+
+	// Picks count landmarks spread out over the maze, each the open cell
+	// farthest from the landmarks picked so far, and keeps a BFS tree from
+	// each for the ALT bound. Passing 0 turns landmarks off.
+	// Runtime: O(count * rows * cols)
+	public void useLandmarks(int count) {
+		int[][] picked = new int[count][];
+		int[] nearest = null;	// distance to the closest landmark so far
+		int from = firstOpenCell();
+		for (int k = 0; k < count && from != UNREACHED; k++) {
+			if (k == 0) {
+				// farthest cell from an arbitrary one makes a good first landmark
+				from = farthest(bfs(from), null);
+			}
+			picked[k] = bfs(from);
+			if (nearest == null) {
+				nearest = picked[k].clone();
+			} else {
+				for (int cell = 0; cell < nearest.length; cell++) {
+					nearest[cell] = Math.min(nearest[cell], picked[k][cell]);
+				}
+			}
+			from = farthest(nearest, picked[k]);
+		}
+		int used = 0;
+		while (used < count && picked[used] != null) used++;
+		synchronized (cache) {
+			fixedBytes += treeBytes() * (used - landmarks.length);
+			landmarks = Arrays.copyOf(picked, used);
+			evictToFit();
+		}
+	}
+
+	// Returns the number of moves on a shortest path between the two cells,
+	// or -1 if there isn't one
+	public int distance(int sourceRow, int sourceCol, int targetRow, int targetCol) {
+		int source = cell(sourceRow, sourceCol);
+		int target = cell(targetRow, targetCol);
+		int[] tree = cachedTree(source);
+		if (tree == null && landmarks.length == 0) {
+			tree = tree(source);
+		}
+		if (tree != null) {
+			return tree[target];
+		}
+		RouterScratch s = borrowScratch();
+		try {
+			return aStar(s, source, target) ? s.g[target] : UNREACHED;
+		} finally {
+			returnScratch(s);
+		}
+	}
+
+	// Returns the cells on a shortest path from source to target, both
+	// included, or null if there isn't one
+	public int[] path(int sourceRow, int sourceCol, int targetRow, int targetCol) {
+		int source = cell(sourceRow, sourceCol);
+		int target = cell(targetRow, targetCol);
+		int[] tree = cachedTree(source);
+		if (tree == null && landmarks.length == 0) {
+			tree = tree(source);
+		}
+		if (tree != null) {
+			if (tree[target] == UNREACHED) return null;
+			return walkBack(tree, null, 0, target);
+		}
+		RouterScratch s = borrowScratch();
+		try {
+			if (!aStar(s, source, target)) return null;
+			return walkBack(s.g, s.stamp, s.epoch, target);
+		} finally {
+			returnScratch(s);
+		}
+	}
+
+	// Returns the BFS tree from source, from the cache or by computing and
+	// caching it. tree[cell] is the moves from source, or -1 if unreachable.
+	// The array is shared and mustn't be changed.
+	// Runtime: O(1) when cached, O(rows * cols) otherwise
+	public int[] tree(int row, int col) {
+		return tree(cell(row, col));
+	}
+
+	private int[] tree(int source) {
+		int[] tree = cachedTree(source);
+		if (tree == null) {
+			// built outside the lock, two threads may both build it but that's harmless
+			tree = bfs(source);
+			synchronized (cache) {
+				if (treeBytes() + ENTRY_OVERHEAD <= maxBytes - fixedBytes) {
+					if (cache.put(source, tree) == null) {
+						cacheBytes += treeBytes() + ENTRY_OVERHEAD;
+					}
+					evictToFit();
+				}
+			}
+		}
+		return tree;
+	}
+
+	// Returns the number of trees in the cache
+	public int cachedSources() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	// Returns the bytes the budget is charged with right now
+	public long usedBytes() {
+		synchronized (cache) {
+			return cacheBytes + fixedBytes;
+		}
+	}
+
+	// Drops every cached tree and every scratch no query is using. Landmarks
+	// stay until useLandmarks(0).
+	public void release() {
+		synchronized (cache) {
+			cache.clear();
+			cacheBytes = 0;
+			fixedBytes -= scratchBytes() * idleScratch.size();
+			idleScratch.clear();
+		}
+	}
+
+	// Evicts least recently used trees until everything fits the budget
+	// again, or there are no trees left to evict
+	// Assume: the caller holds the cache's lock
+	private void evictToFit() {
+		Iterator<Map.Entry<Integer, int[]>> eldest = cache.entrySet().iterator();
+		while (cacheBytes + fixedBytes > maxBytes && eldest.hasNext()) {
+			eldest.next();
+			eldest.remove();
+			cacheBytes -= treeBytes() + ENTRY_OVERHEAD;
+		}
+	}
+
+	// Lends out idle scratch, or charges the budget for a new one
+	private RouterScratch borrowScratch() {
+		synchronized (cache) {
+			RouterScratch s = idleScratch.poll();
+			if (s != null) {
+				return s;
+			}
+			fixedBytes += scratchBytes();
+			evictToFit();
+		}
+		return new RouterScratch(wall.length);
+	}
+
+	private void returnScratch(RouterScratch s) {
+		synchronized (cache) {
+			idleScratch.push(s);
+		}
+	}
+
+	// bytes of one distance tree
+	private long treeBytes() {
+		return 4L * wall.length;
+	}
+
+	// bytes of one scratch, not counting its heap which grows with the search
+	private long scratchBytes() {
+		return 8L * wall.length;
+	}
+
+	private int[] cachedTree(int source) {
+		synchronized (cache) {
+			return cache.get(source);
+		}
+	}
+
+	// Full BFS from source, walls and cells it can't reach get -1
+	// Runtime: O(rows * cols)
+	private int[] bfs(int source) {
+		int[] dist = new int[wall.length];
+		Arrays.fill(dist, UNREACHED);
+		if (wall[source]) return dist;
+		// every cell goes in the queue at most once, so it never wraps
+		int[] queue = new int[wall.length];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = source;
+		dist[source] = 0;
+		while (head < tail) {
+			int cell = queue[head++];
+			int next = dist[cell] + 1;
+			for (int i = 0; i < offsets.length; i++) {
+				int neighbor = cell + offsets[i];
+				if (!wall[neighbor] && dist[neighbor] == UNREACHED) {
+					dist[neighbor] = next;
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+		return dist;
+	}
+
+	// A* from source to target with the larger of the Manhattan distance and
+	// the ALT bound as the estimate. Both never overestimate and are
+	// consistent, so target has its true distance in s.g once it comes off
+	// the heap. Returns false if target can't be reached.
+	private boolean aStar(RouterScratch s, int source, int target) {
+		if (++s.epoch == 0) {
+			// wrapped around, old stamps could look current again
+			Arrays.fill(s.stamp, 0);
+			s.epoch = 1;
+		}
+		s.heapSize = 0;
+		if (wall[source] || wall[target]) return false;
+		int[][] marks = landmarks;
+		for (int[] mark : marks) {
+			// a landmark reaching just one of them means they're not connected
+			if ((mark[source] == UNREACHED) != (mark[target] == UNREACHED)) return false;
+		}
+		int[] g = s.g;
+		int[] stamp = s.stamp;
+		int epoch = s.epoch;
+		g[source] = 0;
+		stamp[source] = epoch;
+		heapPush(s, 0, estimate(marks, source, target), source);
+
+		while (s.heapSize > 0) {
+			long top = s.heap[0];
+			int cell = heapPop(s);
+			// skip entries left behind after we found a shorter way there
+			if ((int) (top >>> 32) != g[cell] + (int) top) continue;
+			if (cell == target) return true;
+			int next = g[cell] + 1;
+			for (int i = 0; i < offsets.length; i++) {
+				int neighbor = cell + offsets[i];
+				if (wall[neighbor]) continue;
+				if (stamp[neighbor] != epoch || next < g[neighbor]) {
+					stamp[neighbor] = epoch;
+					g[neighbor] = next;
+					heapPush(s, next, estimate(marks, neighbor, target), neighbor);
+				}
+			}
+		}
+		return false;
+	}
+
+	// Lower bound on the moves from cell to target
+	private int estimate(int[][] marks, int cell, int target) {
+		int bound = Math.abs(cell / cols - target / cols) + Math.abs(cell % cols - target % cols);
+		for (int[] mark : marks) {
+			int a = mark[cell];
+			int b = mark[target];
+			if (a != UNREACHED && b != UNREACHED) {
+				bound = Math.max(bound, Math.abs(a - b));
+			}
+		}
+		return bound;
+	}
+
+	// Follows distances down from target to the cell at distance 0, using
+	// only cells whose stamp is epoch when stamps are given
+	private int[] walkBack(int[] dist, int[] stamp, int epoch, int target) {
+		int[] path = new int[dist[target] + 1];
+		int cell = target;
+		for (int i = path.length - 1; i > 0; i--) {
+			path[i] = cell;
+			for (int k = 0; k < offsets.length; k++) {
+				int neighbor = cell + offsets[k];
+				if (!wall[neighbor] && (stamp == null || stamp[neighbor] == epoch)
+						&& dist[neighbor] == dist[cell] - 1) {
+					cell = neighbor;
+					break;
+				}
+			}
+		}
+		path[0] = cell;
+		return path;
+	}
+
+	// Returns the cell with the greatest distance, or -1 if none is
+	// reachable; with reachable given, only cells it reaches count
+	private static int farthest(int[] dist, int[] reachable) {
+		int best = UNREACHED;
+		for (int cell = 0; cell < dist.length; cell++) {
+			if ((reachable == null || reachable[cell] != UNREACHED)
+					&& dist[cell] != UNREACHED && (best == UNREACHED || dist[cell] > dist[best])) {
+				best = cell;
+			}
+		}
+		return best;
+	}
+
+	private int firstOpenCell() {
+		for (int cell = 0; cell < wall.length; cell++) {
+			if (!wall[cell]) return cell;
+		}
+		return UNREACHED;
+	}
+
+	private int cell(int row, int col) {
+		if (row < 0 || row >= rows || col < 0 || col >= cols) {
+			throw new IllegalArgumentException("(" + row + ", " + col + ") is outside the maze");
+		}
+		return row * cols + col;
+	}
+
+	// Adds cell with g moves so far and h estimated to go, sifting it up
+	private static void heapPush(RouterScratch s, int g, int h, int cell) {
+		if (s.heapSize == s.heap.length) {
+			s.heap = Arrays.copyOf(s.heap, s.heap.length * 2);
+			s.heapCells = Arrays.copyOf(s.heapCells, s.heap.length);
+		}
+		long[] heap = s.heap;
+		int[] cells = s.heapCells;
+		long entry = ((long) (g + h) << 32) | h;
+		int i = s.heapSize++;
+		while (i > 0 && heap[(i - 1) / 2] > entry) {
+			heap[i] = heap[(i - 1) / 2];
+			cells[i] = cells[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heap[i] = entry;
+		cells[i] = cell;
+	}
+
+	// Removes the smallest entry and returns its cell, sifting the last one down
+	private static int heapPop(RouterScratch s) {
+		long[] heap = s.heap;
+		int[] cells = s.heapCells;
+		int top = cells[0];
+		long last = heap[--s.heapSize];
+		int lastCell = cells[s.heapSize];
+		int i = 0;
+		while (2 * i + 1 < s.heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < s.heapSize && heap[child + 1] < heap[child]) child++;
+			if (heap[child] >= last) break;
+			heap[i] = heap[child];
+			cells[i] = cells[child];
+			i = child;
+		}
+		heap[i] = last;
+		cells[i] = lastCell;
+		return top;
+	}
+}
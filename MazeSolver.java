@@ -0,0 +1,166 @@
+// Filename: MazeSolver.java
+
+import java.util.stream.IntStream;
+
+// Flat ring-buffer BFS from Maze (FLAT_BFS) with its buffers owned by the
+// solver instead of static fields, so separate solvers never share state.
+// A solver keeps its distance, move and queue arrays between calls and only
+// allocates when a maze has more cells than it has seen before, so solving
+// many mazes of the same size allocates nothing after the first. A single
+// solver isn't thread-safe: use one per thread, e.g. forThread().
+public class MazeSolver {
+
+	// walls in the distance array
+	static final int WALL = -1;
+
+	// one solver per thread, reused for every maze solved on that thread
+	private static final ThreadLocal<MazeSolver> POOL = ThreadLocal.withInitial(MazeSolver::new);
+
+	int[] dist = new int[0];     // distance from start + 1 of cell row * cols + col, WALL or 0 if not reached
+	byte[] move = new byte[0];   // index in offsets of the move that first reached each cell
+	int[] queue = new int[64];   // ring buffer of cells, length is a power of two
+	int cols;                    // columns of the last maze solved
+
+	// Returns the solver belonging to the calling thread
+	public static MazeSolver forThread() {
+		return POOL.get();
+	}
+
+	// Solves every maze on the common fork-join pool, each worker thread
+	// using its own pooled solver. result[i] is the number of cells expanded
+	// for mazes[i], whose path is marked in place.
+	// Assume: no two entries are the same char[][] (or share rows)
+	public static int[] solveAll(char[][][] mazes) {
+		int[] expanded = new int[mazes.length];
+		IntStream.range(0, mazes.length).parallel().forEach(i -> expanded[i] = forThread().solve(mazes[i]));
+		return expanded;
+	}
+
+	// Finds every maze's path on the common fork-join pool without changing
+	// the mazes, so they can be shared read-only. result[i] is the path
+	// through mazes[i], or null if it has none.
+	public static MazePath[] findAll(char[][][] mazes) {
+		MazePath[] paths = new MazePath[mazes.length];
+		IntStream.range(0, mazes.length).parallel().forEach(i -> paths[i] = forThread().findPath(mazes[i]));
+		return paths;
+	}
+
+	// Finds the shortest path from (1, 1) to (rows - 2, cols - 2) and marks it
+	// with '.' leaving both ends alone, like Maze.solve. Returns the number
+	// of cells expanded, or 0 when the maze is too small to have a path.
+	// Assume: maze isn't null, is rectangular and walled all the way round
+	// Runtime: O(rows * cols)
+	public int solve(char[][] maze) {
+		if (maze.length <= 3 && maze[0].length <= 3) {
+			return 0;	// start is the end
+		}
+		int expanded = search(maze);
+		MazePath path = pathTo(maze.length, (maze.length - 2) * cols + cols - 2);
+		if (path != null) {
+			path.render(maze);
+		}
+		return expanded;
+	}
+
+	// Finds the shortest path from (1, 1) to (rows - 2, cols - 2) without
+	// writing to maze. Returns null if the end can't be reached.
+	// Assume: maze isn't null, is rectangular and walled all the way round
+	// Runtime: O(rows * cols)
+	public MazePath findPath(char[][] maze) {
+		search(maze);
+		return pathTo(maze.length, (maze.length - 2) * cols + cols - 2);
+	}
+
+	// BFS from the start that stops once the end has its distance. Leaves
+	// the distance (+ 1) of every cell it reached in dist and the index of
+	// the move into it in move. Returns the number of cells expanded.
+	private int search(char[][] maze) {
+		int rows = maze.length;
+		cols = maze[0].length;
+		if ((long) rows * cols > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("maze has too many cells to number with an int");
+		}
+		int cells = rows * cols;
+		if (dist.length < cells) {
+			dist = new int[cells];
+			move = new byte[cells];
+		}
+		// every cell we'll look at is rewritten here, so leftovers from the
+		// last maze don't need clearing
+		int[] dist = this.dist;
+		byte[] move = this.move;
+		for (int row = 0; row < rows; row++) {
+			char[] line = maze[row];
+			for (int col = 0, cell = row * cols; col < cols; col++, cell++) {
+				dist[cell] = (line[col] == '#') ? WALL : 0;
+			}
+		}
+		int start = cols + 1;
+		int end = (rows - 2) * cols + cols - 2;
+		// Maze.MOVE_SET as index offsets, the border is all wall so we never step off the grid
+		int[] offsets = { 1, -1, cols, -cols };
+
+		int[] queue = this.queue;
+		int head = 0;
+		int count = 1;
+		queue[0] = start;
+		dist[start] = 1;
+		int expanded = 0;
+
+		search:
+		while (count > 0 && start != end) {
+			int cell = queue[head];
+			head = (head + 1) & (queue.length - 1);
+			count--;
+			expanded++;
+			int next = dist[cell] + 1;
+			for (int i = 0; i < offsets.length; i++) {
+				int neighbor = cell + offsets[i];
+				if (dist[neighbor] != 0) continue;	// wall or already seen
+				dist[neighbor] = next;
+				move[neighbor] = (byte) i;
+				if (neighbor == end) break search;
+				if (count == queue.length) {
+					queue = grow(queue, head);
+					this.queue = queue;
+					head = 0;
+				}
+				queue[(head + count) & (queue.length - 1)] = neighbor;
+				count++;
+			}
+		}
+		return expanded;
+	}
+
+	// Follows the moves stored by search back from end in one pass, filling
+	// the path from its far end since dist says how long it is
+	private MazePath pathTo(int rows, int end) {
+		if (dist[end] <= 0) {
+			return null;
+		}
+		int[] offsets = { 1, -1, cols, -cols };
+		int[] cells = new int[dist[end]];
+		int cell = end;
+		for (int i = cells.length - 1; i > 0; i--) {
+			cells[i] = cell;
+			cell -= offsets[move[cell]];
+		}
+		cells[0] = cell;
+		return new MazePath(rows, cols, cells);
+	}
+
+	// Returns the number of moves from the start to (row, col) found by the
+	// last solve, or -1 for a wall or a cell the search didn't reach
+	public int distance(int row, int col) {
+		int d = dist[row * cols + col];
+		return (d > 0) ? d - 1 : -1;
+	}
+
+	// Doubles a full ring buffer, unwrapping it so the oldest entry is at 0
+	private static int[] grow(int[] queue, int head) {
+		int[] bigger = new int[queue.length * 2];
+		System.arraycopy(queue, head, bigger, 0, queue.length - head);
+		System.arraycopy(queue, 0, bigger, queue.length - head, head);
+		return bigger;
+	}
+}
@@ -0,0 +1,20 @@
+// Filename: PersistentNode.java
+
+// Immutable treap node. Once built a node never changes, so any number of
+// threads can walk a tree of them without locks. Shared by PersistentTreap
+// and ConcurrentTreap, whose getRoot hands these out.
+public class PersistentNode<T> {
+
+	final T data;                        // data actually storing
+	final int priority;                  // priority to keep in heap
+	final PersistentNode<T> left, right; // children
+	final int size;                      // number of nodes in this subtree
+
+	PersistentNode(T data, int priority, PersistentNode<T> left, PersistentNode<T> right) {
+		this.data = data;
+		this.priority = priority;
+		this.left = left;
+		this.right = right;
+		this.size = 1 + ((left == null) ? 0 : left.size) + ((right == null) ? 0 : right.size);
+	}
+}
@@ -0,0 +1,184 @@
+// Filename: PersistentTreap.java
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Immutable treap. add and remove leave this version alone and return a new
+// one, which copies the O(log(n)) nodes on the changed path and shares every
+// other subtree with this version. Holding on to a version (or its root) is
+// a snapshot: it costs nothing to take and never sees later updates, so
+// readers can iterate it for as long as they like while writers move on.
+public class PersistentTreap<T extends Comparable<T>> implements Iterable<T> {
+
+	private final PersistentNode<T> root;
+
+	// Creates an empty treap
+	public PersistentTreap() {
+		this(null);
+	}
+
+	// Wraps the tree under root, e.g. one taken from getRoot() earlier
+	public PersistentTreap(PersistentNode<T> root) {
+		this.root = root;
+	}
+
+	// Returns a version with data added with a random priority, or this
+	// version if data was already there
+	// Assume: data being passed isn't null reference
+	// Runtime: O(log(n)) time and new nodes
+	public PersistentTreap<T> add(T data) {
+		return add(data, ThreadLocalRandom.current().nextInt());
+	}
+
+	// Returns a version with data added with a priority chosen by the
+	// caller, or this version if data was already there
+	// Assume: data being passed isn't null reference
+	public PersistentTreap<T> add(T data, int priority) {
+		PersistentNode<T> updated = insert(root, data, priority);
+		return (updated == root) ? this : new PersistentTreap<T>(updated);
+	}
+
+	// Returns a version without data, or this version if data wasn't there
+	// Assume: data being passed isn't null reference
+	// Runtime: O(log(n)) time and new nodes
+	public PersistentTreap<T> remove(T data) {
+		PersistentNode<T> updated = delete(root, data);
+		return (updated == root) ? this : new PersistentTreap<T>(updated);
+	}
+
+	// Searches BST style for data
+	// Assume: that data isn't null pointer reference
+	// Runtime: O(log(n))
+	public boolean contains(T data) {
+		PersistentNode<T> iterNode = root;
+		while (iterNode != null) {
+			int result = data.compareTo(iterNode.data);
+			if (result == 0) {
+				return true;
+			}
+			iterNode = (result < 0) ? iterNode.left : iterNode.right;
+		}
+		return false;
+	}
+
+	// Returns the number of items in this version
+	// Runtime: O(1)
+	public int size() {
+		return (root == null) ? 0 : root.size;
+	}
+
+	// Returns the root of this version, an O(1) snapshot handle
+	public PersistentNode<T> getRoot() {
+		return root;
+	}
+
+	// Iterates the items of this version in order. Uses an explicit stack
+	// of the nodes whose data still has to be returned, so each next() only
+	// pushes the left edge of one subtree.
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			@SuppressWarnings("unchecked")
+			private PersistentNode<T>[] stack = (PersistentNode<T>[]) new PersistentNode<?>[16];
+			private int top = pushLeft(root);
+
+			public boolean hasNext() {
+				return top > 0;
+			}
+
+			public T next() {
+				if (top == 0) {
+					throw new NoSuchElementException();
+				}
+				PersistentNode<T> node = stack[--top];
+				stack[top] = null;
+				top = pushLeft(node.right);
+				return node.data;
+			}
+
+			// pushes node and all of its left descendants, returns the new top
+			private int pushLeft(PersistentNode<T> node) {
+				int depth = top;
+				while (node != null) {
+					if (depth == stack.length) {
+						stack = Arrays.copyOf(stack, depth * 2);
+					}
+					stack[depth++] = node;
+					node = node.left;
+				}
+				return depth;
+			}
+		};
+	}
+
+	// Path copying versions of Treap's insert and remove, shared with
+	// ConcurrentTreap. Each returns the node it was given when nothing
+	// changed, so callers can tell without comparing trees.
+
+	// Returns a copy of the path to where data belongs with data added and
+	// rotated up to follow the min-heap rules, or node itself if data is
+	// already there. Recursion only goes as deep as the treap is tall.
+	static <T extends Comparable<T>> PersistentNode<T> insert(PersistentNode<T> node, T data, int priority) {
+		if (node == null) {
+			return new PersistentNode<T>(data, priority, null, null);
+		}
+		int result = data.compareTo(node.data);
+		if (result < 0) {
+			PersistentNode<T> left = insert(node.left, data, priority);
+			if (left == node.left) {
+				return node;
+			}
+			if (left.priority < node.priority) {
+				// right rotation: left child becomes the parent
+				return new PersistentNode<T>(left.data, left.priority, left.left,
+						new PersistentNode<T>(node.data, node.priority, left.right, node.right));
+			}
+			return new PersistentNode<T>(node.data, node.priority, left, node.right);
+		} else if (result > 0) {
+			PersistentNode<T> right = insert(node.right, data, priority);
+			if (right == node.right) {
+				return node;
+			}
+			if (right.priority < node.priority) {
+				// left rotation: right child becomes the parent
+				return new PersistentNode<T>(right.data, right.priority,
+						new PersistentNode<T>(node.data, node.priority, node.left, right.left), right.right);
+			}
+			return new PersistentNode<T>(node.data, node.priority, node.left, right);
+		}
+		return node;
+	}
+
+	// Returns a copy of the path to data with data's node replaced by its
+	// two subtrees joined together, or node itself if data isn't there
+	static <T extends Comparable<T>> PersistentNode<T> delete(PersistentNode<T> node, T data) {
+		if (node == null) {
+			return null;
+		}
+		int result = data.compareTo(node.data);
+		if (result < 0) {
+			PersistentNode<T> left = delete(node.left, data);
+			return (left == node.left) ? node : new PersistentNode<T>(node.data, node.priority, left, node.right);
+		} else if (result > 0) {
+			PersistentNode<T> right = delete(node.right, data);
+			return (right == node.right) ? node : new PersistentNode<T>(node.data, node.priority, node.left, right);
+		}
+		return join(node.left, node.right);
+	}
+
+	// Joins two subtrees where every node of left comes before every node of
+	// right, copying only the nodes along the seam
+	static <T> PersistentNode<T> join(PersistentNode<T> left, PersistentNode<T> right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority <= right.priority) {
+			return new PersistentNode<T>(left.data, left.priority, left.left, join(left.right, right));
+		}
+		return new PersistentNode<T>(right.data, right.priority, join(left, right.left), right.right);
+	}
+}
@@ -10,6 +10,7 @@ public class RunLikeHell {
 	// value we can get jumping to that block.  The one thing we must
 	// keep in mind is that we can't jump the immediately previous block.
 	// Runtime: O(n), Assume: we aren't given an empty array.
+	// MaxGain does the same without the array or overwriting it.
 	public static int maxGain(int [] blocks) {
 		// if null/empty array nothing to hit then
 		if(blocks == null || blocks.length == 0) return 0;
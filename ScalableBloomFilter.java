@@ -0,0 +1,91 @@
+// Filename: ScalableBloomFilter.java
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Bloom filter that grows. A fixed filter can't be resized since we aren't
+// storing the data, so instead once the newest filter has taken as many items
+// as it was sized for we start a new one twice as big behind it, with half the
+// false positive rate. Items are checked against every filter in the chain.
+// The rates of the filters add up to about the rate we were asked for:
+// fpp/2 + fpp/4 + fpp/8 + ... < fpp.
+// Thread-safe, the chain is an immutable array swapped in with compare-and-set
+// and the filters themselves are ConcurrentBloomFilters.
+public class ScalableBloomFilter<T> {
+
+	static final int GROWTH = 2;        // each filter holds this many times more items
+	static final double TIGHTENING = 0.5; // and has this times the false positive rate
+
+	private final AtomicReference<ConcurrentBloomFilter<T>[]> chain;
+	private final double firstFpp; // false positive rate of the first filter
+
+	// Starts with one filter sized for initialCapacity items, the chance of a
+	// false positive stays about fpp however many filters get added
+	// Assume: initialCapacity > 0 and 0 < fpp < 1, else IllegalArgumentException
+	@SuppressWarnings("unchecked")
+	public ScalableBloomFilter(long initialCapacity, double fpp) {
+		firstFpp = fpp * (1 - TIGHTENING);
+		ConcurrentBloomFilter<T> first = new ConcurrentBloomFilter<T>(initialCapacity, firstFpp);
+		chain = new AtomicReference<ConcurrentBloomFilter<T>[]>((ConcurrentBloomFilter<T>[]) new ConcurrentBloomFilter<?>[] {first});
+	}
+
+	// Adding data to the newest filter, unless some filter already has it.
+	// Returns false if data was already there (or looked like it was).
+	// Runtime: O(k * f), k = number of hashes, f = number of filters
+	public boolean add(T data) {
+		return addLong(BitBloomFilter.keyOf(data));
+	}
+
+	// Checking to see if any filter has stored data already
+	// Runtime: O(k * f), k = number of hashes, f = number of filters
+	public boolean contains(T data) {
+		return containsLong(BitBloomFilter.keyOf(data));
+	}
+
+	// Same as add(T) for a primitive key
+	public boolean addLong(long key) {
+		ConcurrentBloomFilter<T>[] filters = chain.get();
+		for (ConcurrentBloomFilter<T> filter : filters)
+			if (filter.containsLong(key))
+				return false;
+
+		ConcurrentBloomFilter<T> last = filters[filters.length - 1];
+		boolean added = last.addLong(key);
+		if (last.insertions() >= last.capacity())
+			grow(filters);
+		return added;
+	}
+
+	// Same as contains(T) for a primitive key
+	public boolean containsLong(long key) {
+		for (ConcurrentBloomFilter<T> filter : chain.get())
+			if (filter.containsLong(key))
+				return true;
+		return false;
+	}
+
+	// Returns the number of filters in the chain
+	public int filterCount() {
+		return chain.get().length;
+	}
+
+	// Returns the number of bits used by all the filters together
+	public long bitCount() {
+		long total = 0;
+		for (ConcurrentBloomFilter<T> filter : chain.get())
+			total += filter.bitCount();
+		return total;
+	}
+
+	// Appends a bigger, stricter filter to the chain we saw. If another
+	// thread already grew it, the compare-and-set fails and we leave it be.
+	private void grow(ConcurrentBloomFilter<T>[] filters) {
+		if (chain.get() != filters)
+			return;
+		ConcurrentBloomFilter<T> last = filters[filters.length - 1];
+		double fpp = firstFpp * Math.pow(TIGHTENING, filters.length);
+		ConcurrentBloomFilter<T>[] grown = Arrays.copyOf(filters, filters.length + 1);
+		grown[filters.length] = new ConcurrentBloomFilter<T>(last.capacity() * GROWTH, fpp);
+		chain.compareAndSet(filters, grown);
+	}
+}
@@ -1,7 +1,7 @@
-import java.io.File;
 import java.io.IOException;
-import java.util.Scanner;
+import java.util.Arrays;
 import java.util.Stack;
+import java.util.stream.IntStream;
 
 // Author: Lucas Ryan
 // Date: June 30, 2016
@@ -15,30 +15,19 @@ public class TopoPath {
 	// (2) Have a path to reach all nodes without visiting nodes again
 	// Return true if topopath, false if not topological or no path exist
 	// Assume: the file we are reading from exists
-	// Runtime: O(n^2) = O(|E|)
+	// Runtime: O(|V| + |E|) for sparse graphs, O(n^2) for dense ones
 	public static boolean hasTopoPath(String filename) throws IOException {
-		
-		// open the file to read the data to generate our matrix to display our graph
-		Scanner sc = new Scanner(new File(filename));
+		Graph graph = Graph.read(filename);
+		return graph.isDense() ? hasTopoPath(graph.toMatrix()) : hasTopoPath(graph);
+	}
+
+	// Original adjacency matrix check, used for small dense graphs
+	// Runtime: O(n^2) = O(|E|)
+	static boolean hasTopoPath(boolean [][] adjMatrix) {
 		Stack<Integer> s = new Stack<Integer>();
 		int count = 0;
-		
-		int size = sc.nextInt();
-		
-		boolean [][] adjMatrix = new boolean[size][size];
 		int [] incoming = new int[adjMatrix.length];
 		
-		for(int i = 0; i < size; i++) {
-			int numNeighbors = sc.nextInt();
-			for(int j = 0; j < numNeighbors; j++) {
-				// location represents nodes current node points to
-				int location = sc.nextInt();
-				adjMatrix[i][location - 1] = true;
-			}
-		}
-		
-		sc.close(); // close file
-		
 		// generate a matrix where each index represents a node in the graph
 		// and the number in the index represents number of nodes point to that given node
 		for(int i = 0; i < adjMatrix.length; i++) {
@@ -88,4 +77,168 @@ public class TopoPath {
 		// we have a valid topological path
 		return true;
 	}
-}
+
+	// Adjacency list version of the check above. Since only one vertex can
+	// ever be ready at a time the stack never holds more than one node,
+	// so we just keep track of the current one.
+	// Runtime: O(|V| + |E|)
+	static boolean hasTopoPath(Graph graph) {
+		int[] offsets = graph.offsets;
+		int[] targets = graph.targets;
+		int[] incoming = graph.incoming.clone();
+		int node = -1;
+		int count = 0;
+
+		// find the single starting point in graph
+		for(int i = 0; i < graph.size; i++) {
+			if(incoming[i] == 0) {
+				if(node != -1) return false;
+				node = i;
+			}
+		}
+		if(node == -1) return false;
+
+		while(node != -1) {
+			count++;
+			int next = -1;
+			for(int e = offsets[node]; e < offsets[node + 1]; e++) {
+				if(--incoming[targets[e]] == 0) {
+					// a second ready node means our graph splits
+					if(next != -1) return false;
+					next = targets[e];
+				}
+			}
+			node = next;
+		}
+		// only a path if we reached all of our nodes
+		return count == graph.size;
+	}
+
+	// Same check as hasTopoPath, but returns the path itself when there is
+	// one, and otherwise tells why not: the first vertex after which two
+	// vertices were ready at once, or a cycle in the graph.
+	// Assume: the file we are reading from exists
+	// Runtime: O(|V| + |E|)
+	public static TopoPathResult findTopoPath(String filename) throws IOException {
+		TopoPathResult result = findTopoPath(Graph.read(filename));
+		result.filename = filename;
+		return result;
+	}
+
+	// Checks every graph file on the common fork-join pool, result[i] is the
+	// result for filenames[i]. A file that can't be read or checked, for
+	// whatever reason, gets a result with its error set instead of stopping
+	// the whole batch.
+	public static TopoPathResult[] checkAll(String[] filenames) {
+		TopoPathResult[] results = new TopoPathResult[filenames.length];
+		IntStream.range(0, filenames.length).parallel().forEach(i -> {
+			try {
+				results[i] = findTopoPath(filenames[i]);
+			} catch (IOException | RuntimeException e) {
+				results[i] = new TopoPathResult();
+				results[i].filename = filenames[i];
+				results[i].error = e;
+			}
+		});
+		return results;
+	}
+
+	// Walks the graph like hasTopoPath(Graph), writing down every vertex
+	// we pass so the path is ready once we have reached them all
+	// Runtime: O(|V| + |E|)
+	static TopoPathResult findTopoPath(Graph graph) {
+		TopoPathResult result = new TopoPathResult();
+		if(graph.size == 0)
+			return result;   // nothing to order, and no cycle either
+		int[] offsets = graph.offsets;
+		int[] targets = graph.targets;
+		int[] incoming = graph.incoming.clone();
+		int[] path = new int[graph.size];
+		int node = -1;
+		int count = 0;
+
+		for(int i = 0; i < graph.size; i++) {
+			if(incoming[i] == 0) {
+				if(node != -1) {
+					result.branchVertex = 0;
+					result.choices = new int[] {node + 1, i + 1};
+					return result;
+				}
+				node = i;
+			}
+		}
+
+		while(node != -1) {
+			path[count++] = node + 1;
+			int next = -1;
+			for(int e = offsets[node]; e < offsets[node + 1]; e++) {
+				if(--incoming[targets[e]] == 0) {
+					if(next != -1) {
+						result.branchVertex = node + 1;
+						result.choices = new int[] {next + 1, targets[e] + 1};
+						return result;
+					}
+					next = targets[e];
+				}
+			}
+			node = next;
+		}
+
+		if(count == graph.size)
+			result.path = path;
+		else
+			result.cycle = findCycle(graph, incoming);
+		return result;
+	}
+
+	// Every vertex we never reached still has an incoming edge from another
+	// vertex we never reached, so walking those edges backwards has to run
+	// into a vertex twice, and the walk between the two visits is a cycle.
+	// Assume: incoming is left over from a walk that stopped early, so the
+	// unreached vertices are exactly the ones with incoming[v] > 0
+	// Runtime: O(|V| + |E|)
+	private static int[] findCycle(Graph graph, int[] incoming) {
+		int n = graph.size;
+		int start = -1;
+		for(int i = 0; i < n && start == -1; i++)
+			if(incoming[i] > 0)
+				start = i;
+		if(start == -1)
+			return null;   // every vertex was reached, so there's no cycle
+
+		// reverse the edges so we can find the sources of each vertex
+		int[] revOffsets = new int[n + 1];
+		for(int e = 0; e < graph.edgeCount(); e++)
+			revOffsets[graph.targets[e] + 1]++;
+		for(int i = 0; i < n; i++)
+			revOffsets[i + 1] += revOffsets[i];
+		int[] sources = new int[graph.edgeCount()];
+		int[] fill = Arrays.copyOf(revOffsets, n);
+		for(int v = 0; v < n; v++)
+			for(int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++)
+				sources[fill[graph.targets[e]]++] = v;
+
+		// step at which we passed each vertex, -1 if we haven't yet
+		int[] step = new int[n];
+		Arrays.fill(step, -1);
+		int[] walk = new int[n + 1];
+		int len = 0;
+		int node = start;
+		while(step[node] == -1) {
+			step[node] = len;
+			walk[len++] = node;
+			for(int e = revOffsets[node]; e < revOffsets[node + 1]; e++) {
+				if(incoming[sources[e]] > 0) {
+					node = sources[e];
+					break;
+				}
+			}
+		}
+
+		// the walk went against the edges, so flip it to follow them
+		int[] cycle = new int[len - step[node]];
+		for(int i = 0; i < cycle.length; i++)
+			cycle[i] = walk[len - 1 - i] + 1;
+		return cycle;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+// Filename: TopoPathResult.java
+
+import java.util.Arrays;
+
+// Outcome of checking one graph for a topological path. Exactly one of
+// path, branchVertex/choices, cycle or error describes the result, except
+// for a graph with no vertices, which leaves them all unset.
+public class TopoPathResult {
+
+	String filename;   // graph file that was checked
+	int[] path;        // the unique topological order, null if there isn't one
+	int branchVertex = -1; // vertex that released two vertices at once, 0 if
+	                       // the graph itself has more than one starting point
+	int[] choices;     // two vertices that were ready at the same time
+	int[] cycle;       // vertices of a cycle, each has an edge to the next and
+	                   // the last one has an edge back to the first
+	Exception error;   // set if the file couldn't be read or checked
+
+	// Returns true if the graph has a topological path
+	public boolean isPath() {
+		return path != null;
+	}
+
+	public String toString() {
+		if (error != null)
+			return filename + ": " + error;
+		if (path != null)
+			return filename + ": path " + Arrays.toString(path);
+		if (cycle != null)
+			return filename + ": cycle " + Arrays.toString(cycle);
+		if (choices == null)
+			return filename + ": empty graph";
+		if (branchVertex == 0)
+			return filename + ": more than one start " + Arrays.toString(choices);
+		return filename + ": branches at " + branchVertex + " into " + Arrays.toString(choices);
+	}
+}
@@ -1,127 +1,208 @@
-import java.io.File;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Queue;
-import java.util.Scanner;
+import java.util.Arrays;
 // Author: Lucas Ryan, and used Sean Szumlanski's code
 // Date: June, 30, 2016
 // Filename: TopoSort.java
 
-public class TopoSort {
-	boolean[][] matrix;
+// Reachability index built once per graph. Holds a level-by-level Kahn
+// ordering of the graph (the acyclicity check) plus a DFS interval labeling,
+// so most "can v reach u" questions are answered from the labels alone and
+// the rest only search the part of the graph that could still lead to u.
+// All vertices are 0-based.
+class ReachIndex {
+
+	final Graph graph;
+	final boolean acyclic;  // false if Kahn's algorithm couldn't place every vertex
+	final int[] order;      // vertices in topological order, each level sorted by id
+	final int[] level;      // length of the longest path from a source to the vertex
+
+	// DFS labels, only filled in for acyclic graphs. Every vertex u reachable
+	// from v has low[v] <= low[u] and post[u] < post[v], and every vertex
+	// with treeLow[v] <= post[u] < post[v] is a DFS tree descendant of v.
+	int[] post;
+	int[] low;
+	int[] treeLow;
+
+	// scratch space for the fallback search, one per querying thread
+	private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+	// Runtime: O(|V| log |V| + |E|), the log only comes from sorting levels
+	ReachIndex(Graph graph) {
+		this.graph = graph;
+		this.order = new int[graph.size];
+		this.level = new int[graph.size];
+
+		int cnt = LevelKahn.sort(graph, order, level);
+
+		// If we didn't include each vertex in our topological sort, we must
+		// have a cycle in the graph.
+		acyclic = (cnt == graph.size);
+		if (acyclic)
+			label();
+	}
 
-	// Reads in a file to generate adjacency matrix to represent
-	// topological graph. Assume: the file we are reading from exists
-	public TopoSort(String filename) throws IOException {
-		// open the file to read the data to generate our matrix to display our
-		// graph
-		Scanner sc = new Scanner(new File(filename));
-		int size = sc.nextInt();
-		matrix = new boolean[size][size];
-		for (int i = 0; i < size; i++) {
-			int numNeighbors = sc.nextInt();
-			for (int j = 0; j < numNeighbors; j++) {
-				// location represents nodes current node points to
-				int location = sc.nextInt();
-				matrix[i][location - 1] = true;
+	// Iterative post-order DFS over the whole graph, starting from vertices in
+	// topological order, that assigns post, low and treeLow to every vertex
+	// Assume: the graph is acyclic
+	// Runtime: O(|V| + |E|)
+	private void label() {
+		int n = graph.size;
+		post = new int[n];
+		low = new int[n];
+		treeLow = new int[n];
+		boolean[] visited = new boolean[n];
+		int[] stack = new int[n];   // vertices on the current DFS path
+		int[] edge = new int[n];    // next edge to look at for each vertex on the path
+		int counter = 0;
+
+		for (int r = 0; r < n; r++) {
+			int root = order[r];
+			if (visited[root])
+				continue;
+			int top = 0;
+			stack[0] = root;
+			edge[0] = graph.offsets[root];
+			visited[root] = true;
+			treeLow[root] = counter;
+
+			while (top >= 0) {
+				int node = stack[top];
+				if (edge[top] < graph.offsets[node + 1]) {
+					int next = graph.targets[edge[top]++];
+					if (!visited[next]) {
+						visited[next] = true;
+						treeLow[next] = counter;
+						stack[++top] = next;
+						edge[top] = graph.offsets[next];
+					}
+				} else {
+					// every child is finished, since a child that is still on the
+					// path would mean a cycle
+					int min = counter;
+					for (int e = graph.offsets[node]; e < graph.offsets[node + 1]; e++)
+						min = Math.min(min, low[graph.targets[e]]);
+					post[node] = counter++;
+					low[node] = min;
+					top--;
+				}
 			}
 		}
-		sc.close();
 	}
 
-	// Finding to see if a given node X comes before node Y in
-	// any variation in the graphs sort. First we check to see
-	// if the graph has any cycles since there wont be a valid
-	// sort, then return false. If there isn't a cycle we then
-	// check to see if y is an ancestor of x, because there are
-	// so many cases where x comes before y, it would be impossible
-	// to solve it. Assume: x and y are both in the graph
-	// Runtime: O(n^2) = O(|E|)
-	public boolean hasTopoSort(int x, int y) {
-		int[] incoming = new int[matrix.length];
-		boolean[] visited = new boolean[matrix.length];
-		Queue<Integer> q = new ArrayDeque<Integer>();
-		int cnt = 0;
-
-
-		// ************************************************************************
-		// * THIS CODE BLOCK IS BASED OFF OF SZUMLANSKI's CODE FROM
-		// TOPOSORT.JAVA *
-		// ************************************************************************
-		// Count the number of incoming edges incident to each vertex. For
-		// sparse
-		// graphs, this could be made more efficient by using an adjacency list.
-		for (int i = 0; i < matrix.length; i++)
-			for (int j = 0; j < matrix.length; j++)
-				incoming[j] += (matrix[i][j] ? 1 : 0);
-
-		// Any vertex with zero incoming edges is ready to be visited, so add it
-		// to
-		// the queue.
-		for (int i = 0; i < matrix.length; i++)
-			if (incoming[i] == 0)
-				q.add(i);
-
-		while (!q.isEmpty()) {
-			// Pull a vertex out of the queue and add it to the topological
-			// sort.
-			int node = q.remove();
-
-			// Count the number of unique vertices we see.
-			++cnt;
-
-			// All vertices we can reach via an edge from the current vertex
-			// should
-			// have their incoming edge counts decremented. If one of these hits
-			// zero, add it to the queue, as it's ready to be included in our
-			// topological sort.
-			for (int i = 0; i < matrix.length; i++)
-				if (matrix[node][i] && --incoming[i] == 0)
-					q.add(i);
-		}
-
-		// If we pass out of the loop without including each vertex in our
-		// topological sort, we must have a cycle in the graph.
-
-		if (cnt != matrix.length)
+	// Returns true if there is a path of at least one edge from v to u
+	// Assume: the graph is acyclic, v and u are 0-based vertices
+	// Runtime: O(1) when the labels decide it, otherwise a search that skips
+	// every vertex whose labels say it can't lead to u
+	boolean reaches(int v, int u) {
+		if (!mayReach(v, u))
 			return false;
-
-		// ************************************************************************
-		// * THE END OF THE SZUMLANSKI'S CODE *
-		// ************************************************************************
-
-		// insert all of the nodes the y points to and mark as visited
-		for (int i = 0; i < matrix.length; i++) {
-			if (matrix[y - 1][i]) {
-				q.add(i);
-				visited[i] = true;
+		if (treeLow[v] <= post[u])
+			return true;    // u is in v's DFS subtree
+
+		Scratch s = scratch.get();
+		int stamp = s.nextStamp(graph.size);
+		int[] seen = s.seen;
+		int[] stack = s.stack;
+		int top = 0;
+		stack[top++] = v;
+		seen[v] = stamp;
+
+		while (top > 0) {
+			int node = stack[--top];
+			for (int e = graph.offsets[node]; e < graph.offsets[node + 1]; e++) {
+				int next = graph.targets[e];
+				if (next == u)
+					return true;
+				if (seen[next] == stamp || !mayReach(next, u))
+					continue;
+				if (treeLow[next] <= post[u])
+					return true;
+				seen[next] = stamp;
+				stack[top++] = next;
 			}
 		}
+		return false;
+	}
 
-		// continue to search through graph until reach x or
-		// can't reach any more nodes
-		while (!q.isEmpty()) {
-			// get the next node in queue
-			int node = q.remove();
-			// check to see if that node is x, if it is then
-			// y is a pre-req of x, thus no matter any possible sort
-			// y will always proceed x
-			if (node == (x - 1))
-				return false;
-
-			// iterate through all the nodes that y links with
-			for (int i = 0; i < matrix.length; i++) {
-				// add it to the queue only if y links to it and we
-				// haven't visited it yet
-				if (matrix[node][i] && !visited[i]) {
-					visited[i] = true; // mark as visited
-					q.add(i);
-				}
+	// False when the labels prove there is no path from v to u
+	private boolean mayReach(int v, int u) {
+		return level[v] < level[u] && post[u] < post[v] && low[v] <= low[u];
+	}
+
+	// Reusable visited marks and stack for the fallback search. Instead of
+	// clearing seen between queries every query uses a new stamp value.
+	private static class Scratch {
+		int[] seen = new int[0];
+		int[] stack = new int[0];
+		int stamp;
+
+		int nextStamp(int size) {
+			if (seen.length < size) {
+				seen = new int[size];
+				stack = new int[size];
+				stamp = 0;
 			}
+			if (++stamp == Integer.MAX_VALUE) {
+				Arrays.fill(seen, 0);
+				stamp = 1;
+			}
+			return stamp;
 		}
+	}
+}
+
+public class TopoSort {
+	Graph graph;        // adjacency list of the graph
+	ReachIndex index;   // acyclicity and reachability, computed once
+
+	// Reads in a file to generate the adjacency list to represent
+	// topological graph, then builds the reachability index for it.
+	// Assume: the file we are reading from exists
+	public TopoSort(String filename) throws IOException {
+		graph = Graph.read(filename);
+		index = new ReachIndex(graph);
+	}
+
+	// Finding to see if a given node X comes before node Y in
+	// any variation in the graphs sort. If the graph has any cycles
+	// there wont be a valid sort, then return false. If there isn't
+	// a cycle, x can come before y unless y is an ancestor of x.
+	// Assume: x and y are both in the graph
+	// Runtime: O(1) for most queries, see ReachIndex.reaches
+	public boolean hasTopoSort(int x, int y) {
+		return index.acyclic && !index.reaches(y - 1, x - 1);
+	}
+
+	// Answers hasTopoSort(xs[i], ys[i]) for every pair, result[i] holds
+	// the answer for the i-th pair
+	// Assume: xs and ys have the same length and all nodes are in the graph
+	public boolean[] hasTopoSort(int[] xs, int[] ys) {
+		boolean[] result = new boolean[xs.length];
+		if (!index.acyclic)
+			return result;
+		for (int i = 0; i < xs.length; i++)
+			result[i] = !index.reaches(ys[i] - 1, xs[i] - 1);
+		return result;
+	}
+
+	// Returns the vertices (1-based) in topological order, every vertex comes
+	// after all of its pre-reqs and vertices on the same level are sorted by
+	// number. Returns null if the graph has a cycle, since there is no order.
+	// Runtime: O(|V|), the order was already computed when the graph was read
+	public int[] topologicalOrder() {
+		if (!index.acyclic)
+			return null;
+		int[] result = new int[graph.size];
+		for (int i = 0; i < graph.size; i++)
+			result[i] = index.order[i] + 1;
+		return result;
+	}
 
-		// if we get through the queue without running into x then there is at
-		// least one case where x proceeds y in a topological sort of the graph
-		return true;
+	// Returns the level of every vertex, levels[i] is the level of vertex i + 1.
+	// Vertices without pre-reqs are on level 0, every other vertex is one level
+	// past its deepest pre-req, so all vertices on a level can be run at once.
+	// Returns null if the graph has a cycle.
+	public int[] levels() {
+		return index.acyclic ? index.level.clone() : null;
 	}
-}
\ No newline at end of file
+}
@@ -2,11 +2,13 @@
 // Filename: Treap.java
 // Date: June 21, 2016
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 //Note BloomFilters can't be resized since we aren't actually storing the data
 //it would be impossible to generate the hashcodes we need
+//ScalableBloomFilter gets around this by chaining more filters as it fills up
 class BloomFilter<T> {
 
 	boolean [][] hash_table;
@@ -69,167 +71,210 @@ class Node<T>{
 	T data;              // data actually storing
 	int priority;        // priority to keep in heap
 	Node<T> left, right; // children
+	int size = 1;        // number of nodes in this subtree
+	int height;          // height of this subtree, 0 for a leaf
 
 	public Node(T data, int priority) {
 		this.data = data;
 		this.priority = priority;
 	}
+
+	// Recomputes size and height from the children's
+	// Runtime: O(1)
+	void update() {
+		int leftSize = 0, leftHeight = -1, rightSize = 0, rightHeight = -1;
+		if(left != null) {
+			leftSize = left.size;
+			leftHeight = left.height;
+		}
+		if(right != null) {
+			rightSize = right.size;
+			rightHeight = right.height;
+		}
+		size = leftSize + rightSize + 1;
+		height = Math.max(leftHeight, rightHeight) + 1;
+	}
 }
 
 
 public class Treap<T extends Comparable<T>> {
 
-	BloomFilter<Integer> hashPriority; // keep track priorities
 	int count;	// count of number nodes
 	Node<T> root; // our sexy Treap root node
+	@SuppressWarnings("unchecked")
+	private Node<T>[] path = (Node<T>[]) new Node<?>[32]; // explicit stack of nodes above us
+	private Node<T> splitLeft, splitRight; // the two halves from the last split
 
-	// Initialize our bloom filter, treap, and node count
+	// Initialize our treap and node count
 	public Treap() {
-		// table sizes booleans should be
-		hashPriority = new BloomFilter<Integer>(new int[] {1744, 2003, 4124, 6421});
 		root = null;
 		count = 0;
 	}
 
 
 	// Generate a random priority to associate with node insert
-	// into tree BST style and then do rotations to maintain heap
-	// the hashCode of an integer is it's own number
+	// into tree BST style and then do rotations to maintain heap.
+	// Priorities come from the thread's own generator, so nothing is
+	// allocated and nothing has to be remembered about past priorities.
 	// Assume: data being passed isn't null reference
 	public void add(T data) {
-
-		// generate a NEW & UNIQUE key for new node
-		int priority;
-		do {
-			Random rand = new Random();
-			priority = rand.nextInt();
-		} while(hashPriority.contains(priority));
-
 		// insert into treap
-		root = add(root, data, priority);
+		insert(data, ThreadLocalRandom.current().nextInt());
 	}
 
-	// if priority value already used, then won't insert given node
+	// Insert with a priority chosen by the caller. Priorities don't have
+	// to be unique: a node only rotates above a parent with a strictly
+	// greater priority, so on a tie the node that was there first stays on
+	// top, and the heap order still holds.
 	// Assume: data being passed isn't null reference
 	public void add(T data, int priority) {
-		if(!hashPriority.contains(priority)) {
-			// insert into treap
-			root = add(root, data, priority);
-		}
+		// insert into treap
+		insert(data, priority);
 	}
 
 
-	// Private recursive call that inserts new node, once insert
-	// as return from recursive calls we check to see if we need
-	// to swap the newly inserted node with parent in order to keep
-	// following the min-heap rules.
-	// Assumes: priority value is unique and is in bloomFilter
+	// Walks down BST style to where the new node belongs, remembering the
+	// path in our explicit stack, then links in the new node and walks back
+	// up the path rotating it above every parent with a greater priority
+	// to keep following the min-heap rules. No recursion, so the call
+	// stack stays the same size however deep the treap gets.
 	// Runtime of O(log(n)) since insertion is O(log(n)) and rotation
 	// is runtime O(1)
-	private Node<T> add(Node<T> root, T data, int priority) {
-		// if found where to store, store node and update count of nodes
-		// update our records once we have a successful insertion into the treap
-		if(root == null) {
-			//once find a key update records to say its been used
-			hashPriority.add(priority);
-			count++;
-			return new Node<T>(data, priority);
-		}
-
-		// find which side to go
-		int result = data.compareTo(root.data);
-
-		// inserting data before current node, go left
-		if (result < 0) {
-			root.left = add(root.left, data, priority);
-			// root is new node's parent, and we only rotate if parent has greater heap
-			// if need to do a switch call needed rotation operation
-			if(root.left.priority < root.priority) {
-				root = rightRotate(root, root.left);
+	private void insert(T data, int priority) {
+		int depth = 0;
+		int result = 0;
+		Node<T> node = root;
+
+		// find where to store, one comparison per level
+		while(node != null) {
+			result = data.compareTo(node.data);
+			if(result == 0) {
+				clear(path, depth);
+				return;	// already in treap
 			}
+			path = push(path, depth++, node);
+			node = (result < 0) ? node.left : node.right;
 		}
 
-		// inserting data after current node, to right
-		else if(0 < result) {
-			root.right = add(root.right, data, priority);
+		// store node and update count of nodes
+		Node<T> child = new Node<T>(data, priority);
+		int pathLength = depth;
+		count++;
+		if(depth == 0) {
+			root = child;
+			return;
+		}
+		if(result < 0) {
+			path[depth - 1].left = child;
+		} else {
+			path[depth - 1].right = child;
+		}
 
-			if(root.right.priority < root.priority) {
-				root = leftRotate(root, root.right);
+		// rotate the new node up while its parent has a greater heap
+		while(depth > 0) {
+			Node<T> parent = path[--depth];
+			if(parent.priority <= child.priority) {
+				depth++;
+				break;
+			}
+			if(parent.left == child) {
+				rightRotate(parent, child);
+			} else {
+				leftRotate(parent, child);
 			}
+			relink(depth, parent, child);
 		}
 
-		// return node of newly modified subtree
-		return root;
+		// the nodes above the new one each gained a node in their subtree
+		while(depth > 0) {
+			path[--depth].update();
+		}
+		clear(path, pathLength);
 	}
 
 
 	// calls the private remove function
 	// Assume: None, won't affect treap if given node isn't in treap
 	public void remove(T data) {
-		// calling private recursive remove function
-		root = remove(root, data);
+		delete(data);
 	}
 
-	// Recursive calls will return newly modified subtree
-	// once we find the node we are looking for then we will
-	// recursively rotate our node down the treap until it's a leaf
-	// node.  Then we can just simply delete it.
+	// Once we find the node we are looking for we rotate it down the
+	// treap until it's a leaf node, then we can just simply delete it.
+	// Every child rotated above it joins the path, so we always know which
+	// parent to relink. The data is compared once per level on the way down
+	// and never again while rotating.
 	// Assume: Nothing, if no match found, no changes made to treap
 	// Runtime: O(log(n)), since remove is O(log(n)) and rotation is O(1)
-	private Node<T> remove(Node<T> node, T data) {
-		// never find a match
-		if(node == null) {
-			return node;
-		}
+	private void delete(T data) {
+		int depth = 0;
+		Node<T> node = root;
 
-		// we have found our matching node
-		else if (data.compareTo(node.data) == 0) {
-			// when are finally a leaf node, update count once have successful delete
-			if(node.left == null && node.right == null) {
-				--count; // decrement counter
-				node = null; // set to null
+		while(node != null) {
+			int result = data.compareTo(node.data);
+			// we have found our matching node
+			if(result == 0) {
+				break;
 			}
+			path = push(path, depth++, node);
+			node = (result < 0) ? node.left : node.right;
+		}
 
-			// if has two kids check one with lesser priority
-			else if(node.left != null && node.right != null) {
-				// find kid with lesser priority
-				if(node.left.priority < node.right.priority) {
-					// get child to be new parent of node and continue to rotate down
-					node = rightRotate(node, node.left);
-					node.right = remove(node.right, data);
-				}
-
-				// its the other child switch with that
-				else {
-					node = leftRotate(node, node.right);
-					node.left = remove(node.left, data);
-				}
-			}
+		// never find a match
+		if(node == null) {
+			clear(path, depth);
+			return;
+		}
 
+		// rotate down until we are finally a leaf node
+		while(node.left != null || node.right != null) {
+			Node<T> child;
+			// if has two kids rotate with the one with lesser priority,
 			// if only one kid rotate in opposite direction of side its on
-			else if(node.left != null) {
-				node = rightRotate(node, node.left);
-				node.right = remove(node.right, data);
+			if(node.right == null || (node.left != null && node.left.priority < node.right.priority)) {
+				child = rightRotate(node, node.left);
+			} else {
+				child = leftRotate(node, node.right);
 			}
+			relink(depth, node, child);
+			path = push(path, depth++, child);
+		}
 
-			else if(node.right != null) {
-				node = leftRotate(node, node.right);
-				node.left = remove(node.left, data);
-			}
+		// unlink the leaf, update count once have successful delete
+		relink(depth, node, null);
+		--count;
+
+		// the nodes above the leaf each lost a node in their subtree
+		for(int i = depth - 1; i >= 0; i--) {
+			path[i].update();
 		}
+		clear(path, depth);
+	}
 
-		// keep going to left
-		else if (data.compareTo(node.data) < 0) {
-			node.left = remove(node.left, data);
+	// Replaces oldChild with newChild under the node at path[depth - 1],
+	// or as the root when depth is 0
+	private void relink(int depth, Node<T> oldChild, Node<T> newChild) {
+		if(depth == 0) {
+			root = newChild;
+		} else if(path[depth - 1].left == oldChild) {
+			path[depth - 1].left = newChild;
+		} else {
+			path[depth - 1].right = newChild;
 		}
+	}
 
-		// keep going to right
-		else if(0 < data.compareTo(node.data)) {
-			node.right = remove(node.right, data);
+	// Stores node at stack[index], doubling the stack first if it's full
+	private static <T> Node<T>[] push(Node<T>[] stack, int index, Node<T> node) {
+		if(index == stack.length) {
+			stack = Arrays.copyOf(stack, stack.length * 2);
 		}
+		stack[index] = node;
+		return stack;
+	}
 
-		// return newly modified subtree
-		return node;
+	// Drops the references left on the stack so removed nodes can be collected
+	private static <T> void clear(Node<T>[] stack, int depth) {
+		Arrays.fill(stack, 0, depth, null);
 	}
 
 	// Making the parent node the left-child of child
@@ -239,6 +284,8 @@ public class Treap<T extends Comparable<T>> {
 	private Node<T> leftRotate(Node<T> parent, Node<T> child) {
 		parent.right = child.left;	// parent adopts child's left-child
 		child.left = parent;		// child becomes parent node's node
+		parent.update();			// parent is below child now, so fix it first
+		child.update();
 		return child;				// return new parent node
 	}
 
@@ -249,6 +296,8 @@ public class Treap<T extends Comparable<T>> {
 	private Node<T> rightRotate(Node<T> parent, Node<T> child) {
 		parent.left = child.right;	// parent adopts child's left-child
 		child.right = parent;		// child becomes parent node's node
+		parent.update();			// parent is below child now, so fix it first
+		child.update();
 		return child;				// return new parent node
 	}
 
@@ -292,25 +341,409 @@ public class Treap<T extends Comparable<T>> {
 		return count;
 	}
 
-	// Returns the height of our Treap, calls the private height
+	// Returns the height of our Treap, -1 if it's empty
+	// Runtime: O(1), every node keeps the height of its subtree
 	public int height() {
-		return height(root);
+		return (root == null) ? -1 : root.height;
 	}
 
-	// Calculate the left height and right height
-	// Returns the height of our Treap calling our recursive calls
-	// Assumes: nothing, if null return -1, else compute given height
-	// Runtime: O(n) because have to go every node in treap
-	private int height(Node<T> node) {
-		// no tree to follow
-		if(node == null) {
-			return -1;
-		} else {
-			int left = height(node.left);	// find left child's height
-			int right = height(node.right);	// find right child's height
+	// Returns the number of items in the treap that come before data
+	// Assume: that data isn't null pointer reference
+	// Runtime: O(log(n))
+	public int rank(T data) {
+		return countBefore(data, false);
+	}
+
+	// Returns the k-th smallest item, counting from 0, or null if the
+	// treap doesn't have that many items
+	// Runtime: O(log(n))
+	public T select(int k) {
+		if(k < 0 || count <= k) {
+			return null;
+		}
+		Node<T> iterNode = root;
+		while(true) {
+			int leftSize = (iterNode.left == null) ? 0 : iterNode.left.size;
+			if(k < leftSize) {
+				iterNode = iterNode.left;
+			} else if(k == leftSize) {
+				return iterNode.data;
+			} else {
+				k -= leftSize + 1;
+				iterNode = iterNode.right;
+			}
+		}
+	}
+
+	// Returns the number of items x with lo <= x <= hi
+	// Assume: that lo and hi aren't null pointer references
+	// Runtime: O(log(n))
+	public int countInRange(T lo, T hi) {
+		if(lo.compareTo(hi) > 0) {
+			return 0;
+		}
+		return countBefore(hi, true) - countBefore(lo, false);
+	}
+
+	// Returns the greatest item less than or equal to data, null if none
+	// Assume: that data isn't null pointer reference
+	// Runtime: O(log(n))
+	public T floor(T data) {
+		T best = null;
+		Node<T> iterNode = root;
+		while(iterNode != null) {
+			int result = data.compareTo(iterNode.data);
+			if(result == 0) {
+				return iterNode.data;
+			} else if(result < 0) {
+				iterNode = iterNode.left;
+			} else {
+				best = iterNode.data;	// candidate, look for a bigger one on the right
+				iterNode = iterNode.right;
+			}
+		}
+		return best;
+	}
+
+	// Returns the least item greater than or equal to data, null if none
+	// Assume: that data isn't null pointer reference
+	// Runtime: O(log(n))
+	public T ceiling(T data) {
+		T best = null;
+		Node<T> iterNode = root;
+		while(iterNode != null) {
+			int result = data.compareTo(iterNode.data);
+			if(result == 0) {
+				return iterNode.data;
+			} else if(result > 0) {
+				iterNode = iterNode.right;
+			} else {
+				best = iterNode.data;	// candidate, look for a smaller one on the left
+				iterNode = iterNode.left;
+			}
+		}
+		return best;
+	}
+
+	// Counts the items less than data, or less than or equal to data if
+	// inclusive, by adding up the left subtrees we pass on the way down
+	private int countBefore(T data, boolean inclusive) {
+		int before = 0;
+		Node<T> iterNode = root;
+		while(iterNode != null) {
+			int result = data.compareTo(iterNode.data);
+			int leftSize = (iterNode.left == null) ? 0 : iterNode.left.size;
+			if(result < 0) {
+				iterNode = iterNode.left;
+			} else if(result > 0) {
+				before += leftSize + 1;
+				iterNode = iterNode.right;
+			} else {
+				return before + leftSize + (inclusive ? 1 : 0);
+			}
+		}
+		return before;
+	}
+
+	// Moves every item greater than or equal to key into a new treap and
+	// returns it, this treap keeps the items less than key
+	// Assume: that key isn't null pointer reference
+	// Runtime: O(log(n))
+	public Treap<T> split(T key) {
+		Treap<T> right = new Treap<T>();
+		Node<T> equal = splitNodes(root, key);
+		root = splitLeft;
+		right.root = splitRight;
+		if(equal != null) {
+			// key itself belongs on the right
+			equal.left = equal.right = null;
+			equal.update();
+			right.root = joinNodes(equal, right.root);
+		}
+		splitLeft = splitRight = null;
+		count = sizeOf(root);
+		right.count = sizeOf(right.root);
+		return right;
+	}
+
+	// Returns a treap holding the items of both treaps, which are left empty
+	// Assume: every item in left comes before every item in right, else
+	// IllegalArgumentException
+	// Runtime: O(log(n))
+	public static <T extends Comparable<T>> Treap<T> join(Treap<T> left, Treap<T> right) {
+		if(left.root != null && right.root != null
+				&& left.select(left.count - 1).compareTo(right.select(0)) >= 0) {
+			throw new IllegalArgumentException("left treap overlaps right treap");
+		}
+		Treap<T> result = new Treap<T>();
+		result.root = result.joinNodes(left.root, right.root);
+		result.count = sizeOf(result.root);
+		left.root = right.root = null;
+		left.count = right.count = 0;
+		return result;
+	}
+
+	// Builds a treap out of sorted data in one pass (Cartesian tree build).
+	// We keep the right spine of the treap built so far on a stack, a new
+	// item pops every spine node with a greater priority, adopts the last
+	// one popped as its left child and goes on the spine as its right end.
+	// Repeated items are only stored once.
+	// Assume: data is sorted in ascending order, else IllegalArgumentException
+	// Runtime: O(n), every node is pushed and popped once
+	@SuppressWarnings("unchecked")
+	public static <T extends Comparable<T>> Treap<T> fromSorted(T[] data) {
+		Treap<T> treap = new Treap<T>();
+		Node<T>[] spine = (Node<T>[]) new Node<?>[32];
+		int top = 0;
+		ThreadLocalRandom rand = ThreadLocalRandom.current();
+
+		for(int i = 0; i < data.length; i++) {
+			if(i > 0) {
+				int result = data[i - 1].compareTo(data[i]);
+				if(result == 0) {
+					continue;	// already stored
+				}
+				if(result > 0) {
+					throw new IllegalArgumentException("data isn't sorted at index " + i);
+				}
+			}
+
+			Node<T> node = new Node<T>(data[i], rand.nextInt());
+			Node<T> last = null;
+			while(top > 0 && spine[top - 1].priority > node.priority) {
+				last = spine[--top];
+				last.update();	// its subtree won't change anymore
+			}
+			node.left = last;
+			if(top > 0) {
+				spine[top - 1].right = node;
+			}
+			spine = push(spine, top++, node);
+			treap.count++;
+		}
 
-			// return max height of given children
-			return (left < right) ? (right + 1): (left + 1);
+		if(top > 0) {
+			treap.root = spine[0];
+		}
+		while(top > 0) {
+			spine[--top].update();
+		}
+		return treap;
+	}
+
+	// Adds every item of other to this treap, other is left empty
+	// Runtime: O(m log(n / m)), m = size of the smaller treap
+	public void union(Treap<T> other) {
+		root = union(root, other.root);
+		count = sizeOf(root);
+		other.root = null;
+		other.count = 0;
+	}
+
+	// Keeps only the items that are also in other, other is left empty
+	// Runtime: O(m log(n / m)), m = size of the smaller treap
+	public void intersection(Treap<T> other) {
+		root = intersection(root, other.root);
+		count = sizeOf(root);
+		other.root = null;
+		other.count = 0;
+	}
+
+	// Removes every item that is in other, other is left empty
+	// Runtime: O(m log(n / m)), m = size of the smaller treap
+	public void difference(Treap<T> other) {
+		root = difference(root, other.root);
+		count = sizeOf(root);
+		other.root = null;
+		other.count = 0;
+	}
+
+	// The set operations below split the treap with the higher root by the
+	// other root's data and recurse on both halves. The recursion only goes
+	// as deep as the treaps are tall, which is O(log(n)).
+
+	private Node<T> union(Node<T> a, Node<T> b) {
+		if(a == null) {
+			return b;
+		}
+		if(b == null) {
+			return a;
 		}
+		// a has to be the one on top of the min-heap
+		if(b.priority < a.priority) {
+			Node<T> temp = a;
+			a = b;
+			b = temp;
+		}
+		splitNodes(b, a.data);	// a.data is already in a, drop b's copy
+		Node<T> left = splitLeft, right = splitRight;
+		splitLeft = splitRight = null;
+		a.left = union(a.left, left);
+		a.right = union(a.right, right);
+		a.update();
+		return a;
+	}
+
+	private Node<T> intersection(Node<T> a, Node<T> b) {
+		if(a == null || b == null) {
+			return null;
+		}
+		if(b.priority < a.priority) {
+			Node<T> temp = a;
+			a = b;
+			b = temp;
+		}
+		Node<T> equal = splitNodes(b, a.data);
+		Node<T> left = splitLeft, right = splitRight;
+		splitLeft = splitRight = null;
+		left = intersection(a.left, left);
+		right = intersection(a.right, right);
+		if(equal == null) {
+			return joinNodes(left, right);	// a.data isn't in both
+		}
+		a.left = left;
+		a.right = right;
+		a.update();
+		return a;
+	}
+
+	private Node<T> difference(Node<T> a, Node<T> b) {
+		if(a == null || b == null) {
+			return a;
+		}
+		Node<T> equal = splitNodes(b, a.data);
+		Node<T> left = splitLeft, right = splitRight;
+		splitLeft = splitRight = null;
+		left = difference(a.left, left);
+		right = difference(a.right, right);
+		if(equal != null) {
+			return joinNodes(left, right);	// a.data is in b, so drop it
+		}
+		a.left = left;
+		a.right = right;
+		a.update();
+		return a;
+	}
+
+	// Splits the subtree into the nodes less than key (left in splitLeft)
+	// and greater than key (left in splitRight). Returns the node equal to
+	// key if there is one, it's cut out of both halves. Walks a single
+	// path down: a node less than key keeps its left subtree and goes on the
+	// right edge of the left half, a greater one keeps its right subtree and
+	// goes on the left edge of the right half, so the heap order holds.
+	// Runtime: O(log(n))
+	private Node<T> splitNodes(Node<T> node, T key) {
+		Node<T> leftTail = null, rightTail = null;
+		Node<T> equal = null;
+		splitLeft = splitRight = null;
+		int depth = 0;
+
+		while(node != null) {
+			int result = key.compareTo(node.data);
+			if(result > 0) {
+				path = push(path, depth++, node);
+				if(leftTail == null) {
+					splitLeft = node;
+				} else {
+					leftTail.right = node;
+				}
+				leftTail = node;
+				node = node.right;
+			} else if(result < 0) {
+				path = push(path, depth++, node);
+				if(rightTail == null) {
+					splitRight = node;
+				} else {
+					rightTail.left = node;
+				}
+				rightTail = node;
+				node = node.left;
+			} else {
+				// everything left of it is less, everything right of it greater
+				equal = node;
+				if(leftTail == null) {
+					splitLeft = node.left;
+				} else {
+					leftTail.right = node.left;
+				}
+				if(rightTail == null) {
+					splitRight = node.right;
+				} else {
+					rightTail.left = node.right;
+				}
+				leftTail = rightTail = null;
+				break;
+			}
+		}
+		if(leftTail != null) {
+			leftTail.right = null;
+		}
+		if(rightTail != null) {
+			rightTail.left = null;
+		}
+
+		// every changed child was visited after its parent
+		for(int i = depth - 1; i >= 0; i--) {
+			path[i].update();
+		}
+		clear(path, depth);
+		return equal;
+	}
+
+	// Joins two subtrees where every node of left comes before every node of
+	// right by walking down the right edge of left and the left edge of
+	// right, always taking the node with the smaller priority next
+	// Runtime: O(log(n))
+	private Node<T> joinNodes(Node<T> left, Node<T> right) {
+		Node<T> top = null;
+		Node<T> parent = null;
+		boolean parentRight = false;	// which side of parent the rest goes on
+		int depth = 0;
+
+		while(left != null && right != null) {
+			Node<T> next;
+			boolean nextRight;
+			if(left.priority <= right.priority) {
+				// keeps its left subtree, the rest is joined on its right
+				next = left;
+				left = left.right;
+				nextRight = true;
+			} else {
+				// keeps its right subtree, the rest is joined on its left
+				next = right;
+				right = right.left;
+				nextRight = false;
+			}
+			top = attach(top, parent, parentRight, next);
+			parent = next;
+			parentRight = nextRight;
+			path = push(path, depth++, next);
+		}
+		top = attach(top, parent, parentRight, (left != null) ? left : right);
+
+		for(int i = depth - 1; i >= 0; i--) {
+			path[i].update();
+		}
+		clear(path, depth);
+		return top;
+	}
+
+	// Hangs child on the given side of parent, or makes it the top when there
+	// is no parent yet, returns the top
+	private static <T> Node<T> attach(Node<T> top, Node<T> parent, boolean right, Node<T> child) {
+		if(parent == null) {
+			return child;
+		}
+		if(right) {
+			parent.right = child;
+		} else {
+			parent.left = child;
+		}
+		return top;
+	}
+
+	// size of a subtree, 0 for an empty one
+	private static <T> int sizeOf(Node<T> node) {
+		return (node == null) ? 0 : node.size;
 	}
 }